@@ -0,0 +1,244 @@
+package org.my.manager;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Opens a {@link FileBackedTaskManager} per board, every board keeps its files in a directory of its own
+ * under the root directory. Boards are opened on first {@link #acquire(String) acquire} and closed again
+ * when they were not used for the idle timeout, or when more than the maximum of boards are open,
+ * least recently used first.
+ * <p>
+ * A board in use is never closed, so the maximum may be exceeded while all open boards are in use.
+ */
+public class BoardRegistry implements AutoCloseable {
+    private static final Pattern BOARD_NAME = Pattern.compile("[A-Za-z0-9_-]{1,64}");
+    private static final List<String> PATH_PROPERTIES =
+            List.of("path", "historyPath", "schedulePath", "logPath", "indexPath", "backupPath", "leasePath");
+
+    private final Path root;
+    private final Properties defaults;
+    private final int maxOpenBoards;
+    private final long idleTimeoutNanos;
+    private final LinkedHashMap<String, Entry> boards = new LinkedHashMap<>(16, 0.75f, true);
+    private final ScheduledExecutorService evictor;
+    private boolean closed;
+
+    /**
+     * Opens a registry, idle boards are closed on a background thread.
+     *
+     * @param defaults      - settings of every board, paths are resolved against the board's directory
+     * @param maxOpenBoards - boards kept open at most
+     * @param idleTimeout   - unused boards are closed after this time, zero keeps them open
+     */
+    public static BoardRegistry open(Path root, Properties defaults, int maxOpenBoards, Duration idleTimeout) {
+        BoardRegistry registry = new BoardRegistry(root, defaults, maxOpenBoards, idleTimeout);
+        if (registry.evictor != null) {
+            long period = Math.max(registry.idleTimeoutNanos / 2, TimeUnit.MILLISECONDS.toNanos(10));
+            registry.evictor.scheduleWithFixedDelay(registry::evictIdle, period, period, TimeUnit.NANOSECONDS);
+        }
+        return registry;
+    }
+
+    private BoardRegistry(Path root, Properties defaults, int maxOpenBoards, Duration idleTimeout) {
+        if (maxOpenBoards < 1) {
+            throw new IllegalArgumentException("maxOpenBoards must be positive");
+        }
+        if (idleTimeout.isNegative()) {
+            throw new IllegalArgumentException("idleTimeout must not be negative");
+        }
+        this.root = root;
+        this.defaults = defaults;
+        this.maxOpenBoards = maxOpenBoards;
+        this.idleTimeoutNanos = idleTimeout.toNanos();
+        this.evictor = idleTimeout.isZero() ? null : Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "board-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Opens the board if it is not open, the board stays open until the returned handle is closed.
+     */
+    public synchronized Board acquire(String name) throws FileBackedTaskManager.ManagerSaveException {
+        if (closed) {
+            throw new IllegalStateException("board registry closed");
+        }
+        if (!BOARD_NAME.matcher(name).matches()) {
+            throw new IllegalArgumentException("invalid board name: " + name);
+        }
+        Entry entry = boards.get(name);
+        if (entry == null) {
+            entry = new Entry(name, FileBackedTaskManager.open(boardProperties(name)));
+            boards.put(name, entry);
+        }
+        entry.users++;
+        evictOverflow();
+        return new Board(entry);
+    }
+
+    /**
+     * @return names of the open boards, least recently used first
+     */
+    public synchronized List<String> openBoards() {
+        return List.copyOf(boards.keySet());
+    }
+
+    /**
+     * Closes the boards which are not in use and were not used for the idle timeout.
+     */
+    public synchronized void evictIdle() {
+        long now = System.nanoTime();
+        Iterator<Map.Entry<String, Entry>> iterator = boards.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Entry> board = iterator.next();
+            Entry entry = board.getValue();
+            if (entry.users == 0 && idleTimeoutNanos > 0 && now - entry.lastUsed >= idleTimeoutNanos) {
+                iterator.remove();
+                evict(entry);
+            }
+        }
+    }
+
+    private void evictOverflow() {
+        Iterator<Map.Entry<String, Entry>> iterator = boards.entrySet().iterator();
+        while (boards.size() > maxOpenBoards && iterator.hasNext()) {
+            Map.Entry<String, Entry> board = iterator.next();
+            if (board.getValue().users == 0) {
+                iterator.remove();
+                evict(board.getValue());
+            }
+        }
+    }
+
+    private synchronized void release(Entry entry) {
+        entry.users--;
+        entry.lastUsed = System.nanoTime();
+        if (closed && entry.users == 0) {
+            evict(entry);
+        } else {
+            evictOverflow();
+        }
+    }
+
+    private Properties boardProperties(String name) throws FileBackedTaskManager.ManagerSaveException {
+        Path directory = root.resolve(name);
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new FileBackedTaskManager.ManagerSaveException("board directory could not be created", e);
+        }
+        Properties properties = new Properties();
+        properties.putAll(defaults);
+        for (String key : PATH_PROPERTIES) {
+            String value = defaults.getProperty(key);
+            if (value != null) {
+                Path path = Paths.get(value);
+                properties.setProperty(key,
+                        directory.resolve(path.isAbsolute() ? path.getFileName() : path).toString());
+            }
+        }
+        properties.putIfAbsent("path", directory.resolve("dump.csv").toString());
+        properties.putIfAbsent("historyPath", directory.resolve("history.csv").toString());
+        properties.putIfAbsent("schedulePath", directory.resolve("schedule.dat").toString());
+        properties.putIfAbsent("logPath", directory.resolve("dump.log").toString());
+        properties.putIfAbsent("indexPath", directory.resolve("dump.idx").toString());
+        properties.putIfAbsent("backupPath", directory.resolve("backup").toString());
+        properties.putIfAbsent("leasePath", directory.resolve("dump.lease").toString());
+        return properties;
+    }
+
+    /**
+     * Closes a board nobody waits for, on eviction or on its release after the registry was closed.
+     */
+    private static void evict(Entry entry) {
+        try {
+            entry.manager.close();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Closes the boards which are not in use, boards in use are closed once they are released.
+     *
+     * @throws FileBackedTaskManager.ManagerSaveException if a board could not be closed,
+     *                                                    failures of further boards are suppressed in it
+     */
+    @Override
+    public synchronized void close() throws FileBackedTaskManager.ManagerSaveException {
+        closed = true;
+        if (evictor != null) {
+            evictor.shutdownNow();
+        }
+        FileBackedTaskManager.ManagerSaveException failure = null;
+        for (Map.Entry<String, Entry> board : boards.entrySet()) {
+            Entry entry = board.getValue();
+            if (entry.users == 0) {
+                try {
+                    entry.manager.close();
+                } catch (Exception e) {
+                    if (failure == null) {
+                        failure = new FileBackedTaskManager.ManagerSaveException(
+                                "board " + entry.name + " could not be closed", e);
+                    } else {
+                        failure.addSuppressed(e);
+                    }
+                }
+            }
+        }
+        boards.clear();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Handle of an acquired board, the manager must not be used after the handle is closed.
+     */
+    public final class Board implements AutoCloseable {
+        private final Entry entry;
+        private boolean released;
+
+        private Board(Entry entry) {
+            this.entry = entry;
+        }
+
+        public String name() {
+            return entry.name;
+        }
+
+        public FileBackedTaskManager manager() {
+            return entry.manager;
+        }
+
+        @Override
+        public void close() {
+            if (!released) {
+                released = true;
+                release(entry);
+            }
+        }
+    }
+
+    private static final class Entry {
+        private final String name;
+        private final FileBackedTaskManager manager;
+        private int users;
+        private long lastUsed = System.nanoTime();
+
+        private Entry(String name, FileBackedTaskManager manager) {
+            this.name = name;
+            this.manager = manager;
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package org.my.manager;
+
+import org.my.task.Epic;
+import org.my.task.Subtask;
+import org.my.task.Task;
+import org.my.util.IdGenerator;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Task manager safe for many threads at once.
+ * <p>
+ * Tasks are kept in concurrent maps. Changes of a task lock the task's id, changes of a subtask lock the id
+ * of its epic, so rollups of an epic are done by one thread at a time while other epics change in parallel.
+ * A new subtask also locks its own id, so a subtask id can't be taken under two epics at once.
+ * Ids are locked by stripes. Deleting all tasks, epics or subtasks and batches exclude every other change.
+ * Tasks and subtasks are frozen and replaced on change, so they are read without locks,
+ * epics are modified in place and their snapshots are taken under their lock. Unknown and null ids are not found.
+ */
+public class ConcurrentTaskManager extends InMemoryTaskManager {
+    private static final int STRIPES = 64;
+
+    private final Lock[] stripes = new Lock[STRIPES];
+    private final ReadWriteLock bulkLock = new ReentrantReadWriteLock();
+
+    public ConcurrentTaskManager() {
+        super(new SynchronizedHistoryManager(Managers.getDefaultHistory()),
+                new ConcurrentHashMap<>(), new ConcurrentHashMap<>(), new ConcurrentHashMap<>());
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    @Override
+    protected Epic snapshot(Epic epic) {
+        return shared(epic.getId(), epic::snapshot);
+    }
+
+    @Override
+    public Optional<Task> getTaskById(String id) {
+        return id == null ? Optional.empty() : super.getTaskById(id);
+    }
+
+    @Override
+    public Optional<Epic> getEpicById(String id) {
+        return id == null ? Optional.empty() : shared(id, () -> super.getEpicById(id));
+    }
+
+    @Override
+    public Optional<Subtask> getSubtaskById(String id) {
+        return id == null ? Optional.empty() : super.getSubtaskById(id);
+    }
+
+    @Override
+    public List<Subtask> getSubtasksOfEpic(Epic epic) {
+        return shared(epic.getId(), () -> super.getSubtasksOfEpic(epic));
+    }
+
+    @Override
+    public boolean createTask(Task task) {
+        assignId(task);
+        return shared(task.getId(), () -> super.createTask(task));
+    }
+
+    @Override
+    public boolean createEpic(Epic epic) {
+        assignId(epic);
+        return shared(epic.getId(), () -> super.createEpic(epic));
+    }
+
+    @Override
+    public boolean createSubtask(Subtask subtask) {
+        assignId(subtask);
+        if (subtask.getEpicId() == null) {
+            return false;
+        }
+        return shared(subtask.getEpicId(), subtask.getId(), () -> super.createSubtask(subtask));
+    }
+
+    @Override
+    public boolean updateTask(Task task) {
+        if (task.getId() == null) {
+            return false;
+        }
+        return shared(task.getId(), () -> super.updateTask(task));
+    }
+
+    @Override
+    public boolean updateEpic(Epic epic) {
+        if (epic.getId() == null) {
+            return false;
+        }
+        return shared(epic.getId(), () -> super.updateEpic(epic));
+    }
+
+    @Override
+    public boolean updateSubtask(Subtask subtask) {
+        if (subtask.getId() == null || subtask.getEpicId() == null) {
+            return false;
+        }
+        return shared(subtask.getEpicId(), () -> super.updateSubtask(subtask));
+    }
+
+    @Override
+    public Task deleteTaskById(String id) {
+        if (id == null) {
+            return null;
+        }
+        return shared(id, () -> super.deleteTaskById(id));
+    }
+
+    @Override
+    public Epic deleteEpicById(String id) {
+        if (id == null) {
+            return null;
+        }
+        return shared(id, () -> super.deleteEpicById(id));
+    }
+
+    @Override
+    public Subtask deleteSubtaskById(String id) {
+        Subtask stored = id == null ? null : subtasks.get(id);
+        if (stored == null) {
+            return null;
+        }
+        return shared(stored.getEpicId(), () -> super.deleteSubtaskById(id));
+    }
+
+    @Override
+    public boolean deleteAllTasks() {
+        return exclusive(super::deleteAllTasks);
+    }
+
+    @Override
+    public boolean deleteAllEpics() {
+        return exclusive(super::deleteAllEpics);
+    }
+
+    @Override
+    public boolean deleteAllSubTasks() {
+        return exclusive(super::deleteAllSubTasks);
+    }
+
+    @Override
+    public boolean createAll(Collection<? extends Task> items) {
+        items.forEach(this::assignId);
+        return exclusive(() -> super.createAll(items));
+    }
+
+    @Override
+    public boolean updateAll(Collection<? extends Task> items) {
+        return exclusive(() -> super.updateAll(items));
+    }
+
+    @Override
+    public List<Task> deleteAll(Collection<String> ids) {
+        return exclusive(() -> super.deleteAll(ids));
+    }
+
+    private void assignId(Task task) {
+        if (task.getId() != null) {
+            return;
+        }
+        IdGenerator idGenerator = getIdGenerator();
+        synchronized (idGenerator) {
+            try {
+                task.setId(idGenerator.generateId());
+            } catch (IdGenerator.IdGeneratorOverflow e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    private static int stripe(String id) {
+        int hash = id.hashCode();
+        return (hash ^ (hash >>> 16)) & (STRIPES - 1);
+    }
+
+    /**
+     * Runs an action on a single task under the id's lock, alongside actions on other ids.
+     */
+    private <T> T shared(String id, Supplier<T> action) {
+        Lock lock = stripes[stripe(id)];
+        bulkLock.readLock().lock();
+        try {
+            lock.lock();
+            try {
+                return action.get();
+            } finally {
+                lock.unlock();
+            }
+        } finally {
+            bulkLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Runs an action under the locks of both ids, taken in stripe order so that actions locking the same ids
+     * in any order don't deadlock.
+     */
+    private <T> T shared(String id, String otherId, Supplier<T> action) {
+        int stripe = stripe(id);
+        int otherStripe = stripe(otherId);
+        if (stripe == otherStripe) {
+            return shared(id, action);
+        }
+        Lock first = stripes[Math.min(stripe, otherStripe)];
+        Lock second = stripes[Math.max(stripe, otherStripe)];
+        bulkLock.readLock().lock();
+        try {
+            first.lock();
+            try {
+                second.lock();
+                try {
+                    return action.get();
+                } finally {
+                    second.unlock();
+                }
+            } finally {
+                first.unlock();
+            }
+        } finally {
+            bulkLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Runs a change of many tasks while no other change runs.
+     */
+    private <T> T exclusive(Supplier<T> change) {
+        bulkLock.writeLock().lock();
+        try {
+            return change.get();
+        } finally {
+            bulkLock.writeLock().unlock();
+        }
+    }
+}
@@ -1,194 +1,446 @@
 package org.my.manager;
 
+import org.my.manager.scheduler.ScheduleStore;
 import org.my.manager.scheduler.Scheduler;
+import org.my.manager.storage.ChannelWriter;
+import org.my.manager.storage.CompressedRecordFile;
+import org.my.manager.storage.GroupCommit;
+import org.my.manager.storage.FormatConverter;
+import org.my.manager.storage.HistoryJournal;
+import org.my.manager.storage.LogRecord;
+import org.my.manager.storage.ParallelRecordReader;
+import org.my.manager.storage.PersistenceQueue;
+import org.my.manager.storage.RecordFormat;
+import org.my.manager.storage.RecordIndex;
+import org.my.manager.storage.TaskLog;
 import org.my.task.Epic;
 import org.my.task.Subtask;
 import org.my.task.Task;
-import org.my.util.TaskStringifier;
 
 import java.io.*;
 import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
+import java.nio.channels.Channels;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileLock;
-import java.nio.charset.StandardCharsets;
+import java.nio.channels.OverlappingFileLockException;
 import java.nio.file.FileSystem;
 import java.nio.file.*;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
 
 public class FileBackedTaskManager extends InMemoryTaskManager implements TaskManager, AutoCloseable {
     private static final String PROP_RES = "filebackedtaskmanager.properties";
     private static final String HIDDEN_ATTRIBUTE = "dos:hidden";
     private static final FileSystem FILE_SYSTEM = FileSystems.getDefault();
-
-    //repository
-    private final Map<String, Task> tasks = new HashMap<>();
-    private final Map<String, Epic> epics = new HashMap<>();
-    private final Map<String, Subtask> subtasks = new HashMap<>();
+    private static final DateTimeFormatter BACKUP_NAME_FORMATTER = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS");
 
     //fields
     private static boolean canBeHidden = false;
-    private final ByteBuffer buffer = ByteBuffer.allocateDirect(4096);
-    private final TaskStringifier taskStringifier = new TaskStringifier();
     private RandomAccessFile raf;
     private FileChannel fileChannel;
-    private FileChannel historyFileChannel;
+    private final JournaledHistoryManager journaledHistory;
+    private HistoryJournal historyJournal;
+    private final Path saveFile;
+    private ScheduleStore scheduleStore;
+    private final PersistenceMode persistenceMode;
+    private final long compactionThreshold;
+    private final GroupCommit groupCommit;
+    private final RecordFormat recordFormat;
+    private TaskLog taskLog;
+    private RecordIndex recordIndex;
+    private ExecutorService compactor;
+    private Future<?> compaction;
+    private PersistenceQueue persistenceQueue;
+    private volatile boolean compactionDue;
+    private final Path saveHistoryFile;
     private final Path scheduleFile;
+    private final Path backupPath;
+    private final int compressionLevel;
+    private ExecutorService backupWriter;
+    private FileChannel leaseChannel;
+    private FileLock lease;
+    private final Object writeLock = new Object();
+    private final Map<String, Task> pendingUpdates = new LinkedHashMap<>();
+    private final long coalesceWindowMillis;
+    private ScheduledExecutorService coalescer;
+    private boolean flushScheduled;
+    private boolean deferCompaction;
 
     // instance
     private static FileBackedTaskManager fileBackedTaskManager;
 
-    private FileBackedTaskManager(Path saveFile, Path saveHistoryFile, Path scheduleFile) {
+    private FileBackedTaskManager(Path saveFile, Path saveHistoryFile, Path scheduleFile, Path backupPath,
+                                  PersistenceMode persistenceMode, long compactionThreshold,
+                                  GroupCommit groupCommit, RecordFormat recordFormat, int compressionLevel,
+                                  long coalesceWindowMillis) {
+        this(new JournaledHistoryManager(Managers.getDefaultHistory()), saveFile, saveHistoryFile, scheduleFile,
+                backupPath, persistenceMode, compactionThreshold, groupCommit, recordFormat, compressionLevel,
+                coalesceWindowMillis);
+    }
+
+    private FileBackedTaskManager(JournaledHistoryManager journaledHistory, Path saveFile, Path saveHistoryFile,
+                                  Path scheduleFile, Path backupPath,
+                                  PersistenceMode persistenceMode, long compactionThreshold,
+                                  GroupCommit groupCommit, RecordFormat recordFormat, int compressionLevel,
+                                  long coalesceWindowMillis) {
+        super(journaledHistory);
+        this.journaledHistory = journaledHistory;
+        this.saveFile = saveFile;
+        this.saveHistoryFile = saveHistoryFile;
         this.scheduleFile = scheduleFile;
+        this.backupPath = backupPath;
+        this.compressionLevel = compressionLevel;
+        this.coalesceWindowMillis = coalesceWindowMillis;
+        this.persistenceMode = persistenceMode;
+        this.compactionThreshold = compactionThreshold;
+        this.groupCommit = groupCommit;
+        this.recordFormat = recordFormat;
         if (FILE_SYSTEM.supportedFileAttributeViews().stream().anyMatch(x -> x.equals("dos"))) {
             canBeHidden = true;
         }
-        buffer.order(ByteOrder.nativeOrder());
     }
 
     public static synchronized FileBackedTaskManager getInstance() throws ManagerSaveException {
+        if (fileBackedTaskManager != null) {
+            return fileBackedTaskManager;
+        }
         Properties properties = new Properties();
-        Path saveFile;
-        Path saveHistoryFile;
-        Path scheduleFile;
         FileInputStream fis = null;
-        if (fileBackedTaskManager == null) {
+        try {
+            fis = new FileInputStream(
+                    Objects.requireNonNull(
+                            FileBackedTaskManager.class
+                                    .getClassLoader()
+                                    .getResource(PROP_RES)
+                    ).getFile()
+            );
+            properties.load(fis);
+        } catch (IOException e) {
+            throw new ManagerSaveException("properties file error");
+        } finally {
             try {
-                fis = new FileInputStream(
-                        Objects.requireNonNull(
-                                FileBackedTaskManager.class
-                                        .getClassLoader()
-                                        .getResource(PROP_RES)
-                        ).getFile()
-                );
-                properties.load(fis);
-                saveFile = Paths.get(properties.getProperty("path", "dump.csv"));
-                saveHistoryFile = Paths.get(properties.getProperty("historyPath", "history.csv"));
-                scheduleFile = Paths.get(properties.getProperty("schedulePath", "schedule.dat"));
+                if (fis != null) {
+                    fis.close();
+                }
             } catch (IOException e) {
-                throw new ManagerSaveException("properties file error");
-            } finally {
-                try {
-                    if (fis != null) {
-                        fis.close();
+                e.printStackTrace();
+            }
+        }
+        return getInstance(properties);
+    }
+
+    /**
+     * Opens the manager with the given settings instead of the ones from {@value PROP_RES}.
+     * Has no effect if the manager is already open.
+     */
+    public static synchronized FileBackedTaskManager getInstance(Properties properties) throws ManagerSaveException {
+        if (fileBackedTaskManager == null) {
+            fileBackedTaskManager = open(properties);
+        }
+        return fileBackedTaskManager;
+    }
+
+    /**
+     * Opens a manager of its own with the given settings, apart from the {@link #getInstance() shared} one.
+     * Managers must not share files, see {@link BoardRegistry}.
+     */
+    public static FileBackedTaskManager open(Properties properties) throws ManagerSaveException {
+        Path saveFile = Paths.get(properties.getProperty("path", "dump.csv"));
+        Path saveHistoryFile = Paths.get(properties.getProperty("historyPath", "history.csv"));
+        Path scheduleFile = Paths.get(properties.getProperty("schedulePath", "schedule.dat"));
+        Path logFile = Paths.get(properties.getProperty("logPath", "dump.log"));
+        Path indexFile = Paths.get(properties.getProperty("indexPath", "dump.idx"));
+        Path backupPath = Paths.get(properties.getProperty("backupPath", "backup"));
+        Path leaseFile = Paths.get(properties.getProperty("leasePath", "dump.lease"));
+        PersistenceMode persistenceMode;
+        long compactionThreshold;
+        GroupCommit groupCommit;
+        RecordFormat recordFormat;
+        int asyncQueueCapacity;
+        boolean rebuildSchedule;
+        int compressionLevel;
+        boolean exclusive;
+        long coalesceWindowMillis;
+        try {
+            persistenceMode = PersistenceMode.valueOf(
+                    properties.getProperty("mode", "rewrite").toUpperCase(Locale.ROOT));
+            compactionThreshold = Long.parseLong(properties.getProperty("compactionThreshold", "4194304"));
+            groupCommit = new GroupCommit(
+                    GroupCommit.Durability.valueOf(
+                            properties.getProperty("durability", "op").toUpperCase(Locale.ROOT)),
+                    Long.parseLong(properties.getProperty("groupCommitWindowMicros", "1000")),
+                    Long.parseLong(properties.getProperty("groupCommitBytes", "65536"))
+            );
+            recordFormat = RecordFormat.of(properties.getProperty("format", "text"));
+            asyncQueueCapacity = Boolean.parseBoolean(properties.getProperty("async", "false"))
+                    ? Integer.parseInt(properties.getProperty("asyncQueueCapacity", "1024"))
+                    : 0;
+            rebuildSchedule = switch (properties.getProperty("schedule", "snapshot").toLowerCase(Locale.ROOT)) {
+                case "snapshot" -> false;
+                case "rebuild" -> true;
+                default -> throw new IllegalArgumentException("unknown schedule source");
+            };
+            compressionLevel = switch (properties.getProperty("compression", "none").toLowerCase(Locale.ROOT)) {
+                case "none" -> 0;
+                case "deflate" -> {
+                    int level = Integer.parseInt(properties.getProperty("compressionLevel", "6"));
+                    if (level < Deflater.BEST_SPEED || level > Deflater.BEST_COMPRESSION) {
+                        throw new IllegalArgumentException("compressionLevel must be between 1 and 9");
                     }
-                } catch (IOException e) {
-                    e.printStackTrace();
+                    yield level;
                 }
+                default -> throw new IllegalArgumentException("unknown compression");
+            };
+            exclusive = switch (properties.getProperty("ownership", "shared").toLowerCase(Locale.ROOT)) {
+                case "shared" -> false;
+                case "exclusive" -> true;
+                default -> throw new IllegalArgumentException("unknown ownership");
+            };
+            coalesceWindowMillis = Long.parseLong(properties.getProperty("coalesceWindowMillis", "0"));
+            if (coalesceWindowMillis < 0) {
+                throw new IllegalArgumentException("coalesceWindowMillis must not be negative");
             }
-            try {
-                fileBackedTaskManager = new FileBackedTaskManager(saveFile, saveHistoryFile, scheduleFile);
-                if (Files.notExists(saveFile)) {
-                    Files.createFile(saveFile);
-                    if (canBeHidden) {
-                        Files.setAttribute(saveFile, HIDDEN_ATTRIBUTE, true);
-                    }
-                } else {
-                    fileBackedTaskManager.loadFromFile(saveFile, FileType.DATA);
-
+            if (asyncQueueCapacity < 0) {
+                throw new IllegalArgumentException("asyncQueueCapacity must be positive");
+            }
+        } catch (IllegalArgumentException e) {
+            throw new ManagerSaveException("invalid persistence settings", e);
+        }
+        FileBackedTaskManager manager;
+        try {
+            manager = new FileBackedTaskManager(saveFile, saveHistoryFile, scheduleFile, backupPath,
+                    persistenceMode, compactionThreshold, groupCommit, recordFormat, compressionLevel,
+                    coalesceWindowMillis);
+            if (exclusive) {
+                manager.takeLease(leaseFile);
+            }
+            if (Files.notExists(saveFile)) {
+                Files.createFile(saveFile);
+                if (canBeHidden) {
+                    Files.setAttribute(saveFile, HIDDEN_ATTRIBUTE, true);
                 }
-                if (Files.notExists(saveHistoryFile)) {
-                    Files.createFile(saveHistoryFile);
-                    if (canBeHidden) {
-                        Files.setAttribute(saveHistoryFile, HIDDEN_ATTRIBUTE, true);
+            } else {
+                if (RecordFormat.detect(saveFile, recordFormat) != recordFormat
+                        || persistenceMode == PersistenceMode.REWRITE && CompressedRecordFile.isCompressed(saveFile)) {
+                    FormatConverter.convert(saveFile, saveFile, recordFormat);
+                }
+                if (manager.loadFromFile(saveFile, FileType.DATA)) {
+                    // slots of the index sidecar may point at blanked records
+                    Files.deleteIfExists(indexFile);
+                }
+            }
+            if (persistenceMode == PersistenceMode.LOG) {
+                manager.taskLog = new TaskLog(logFile, recordFormat, groupCommit);
+                manager.taskLog.replay(manager::applyRecord);
+                manager.compactor = Executors.newSingleThreadExecutor(r -> {
+                    Thread thread = new Thread(r, "task-log-compactor");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+            if (persistenceMode == PersistenceMode.REWRITE) {
+                if (TaskLog.exists(logFile)) {
+                    // records left by a run in log mode are folded into the data file before it is edited in place
+                    try (TaskLog leftover = new TaskLog(logFile, recordFormat, groupCommit)) {
+                        leftover.replay(manager::applyRecord);
+                        manager.writeSnapshot(manager.getData());
+                        leftover.delete();
                     }
-                } else {
-                    fileBackedTaskManager.loadFromFile(saveHistoryFile, FileType.HISTORY);
+                    Files.deleteIfExists(indexFile);
                 }
+                manager.recordIndex = RecordIndex.open(indexFile, saveFile, recordFormat);
+            }
+            manager.linkSubtasks();
+            manager.rebuildIndexes();
+            if (Files.notExists(saveHistoryFile)) {
+                Files.createFile(saveHistoryFile);
+                if (canBeHidden) {
+                    Files.setAttribute(saveHistoryFile, HIDDEN_ATTRIBUTE, true);
+                }
+            }
+            HistoryJournal.Replay historyReplay = HistoryJournal.replay(saveHistoryFile);
+            manager.restoreHistory(historyReplay.history());
+            manager.historyJournal = HistoryJournal.open(saveHistoryFile, historyReplay);
+            manager.journaledHistory.attach(manager.historyJournal);
+            manager.journaledHistory.compactIfNeeded();
+            if (rebuildSchedule) {
+                manager.scheduler = Scheduler.rebuild(Stream.concat(
+                        manager.tasks.values().stream(),
+                        manager.subtasks.values().stream()).toList());
+            } else {
                 if (Files.notExists(scheduleFile)) {
                     Files.createFile(scheduleFile);
                     if (canBeHidden) {
                         Files.setAttribute(scheduleFile, HIDDEN_ATTRIBUTE, true);
                     }
-                } else {
-                    fileBackedTaskManager.scheduler = (Scheduler) fileBackedTaskManager.deserialize(scheduleFile);
                 }
-            } catch (IOException e) {
-                throw new ManagerSaveException("file creation/load error", e);
-            } catch (ClassNotFoundException e) {
-                throw new ManagerSaveException("deserialization error, class not found");
+                manager.scheduleStore = new ScheduleStore(scheduleFile);
+                manager.scheduler = manager.scheduleStore.load();
             }
+            if (persistenceMode == PersistenceMode.LOG && manager.taskLog.needsCompaction()) {
+                manager.compact(manager.getData());
+            }
+        } catch (IOException e) {
+            throw new ManagerSaveException("file creation/load error", e);
+        } catch (ClassNotFoundException e) {
+            throw new ManagerSaveException("deserialization error, class not found");
+        }
+        if (persistenceMode == PersistenceMode.REWRITE) {
             try {
-                fileBackedTaskManager.raf = new RandomAccessFile(saveFile.toFile(), "rw");
+                manager.raf = new RandomAccessFile(saveFile.toFile(), "rw");
             } catch (FileNotFoundException e) {
                 throw new ManagerSaveException("could not open RAF");
             }
             try {
-                fileBackedTaskManager.fileChannel = FileChannel.open(saveFile, StandardOpenOption.APPEND);
+                manager.fileChannel = FileChannel.open(saveFile, StandardOpenOption.WRITE);
             } catch (IOException e) {
                 throw new ManagerSaveException("appender could not be opened");
             }
-            try {
-                fileBackedTaskManager.historyFileChannel = FileChannel.open(saveHistoryFile, StandardOpenOption.WRITE);
-            } catch (IOException e) {
-                throw new ManagerSaveException("History file could not be opened for write");
-            }
         }
-        return fileBackedTaskManager;
+        if (asyncQueueCapacity > 0) {
+            manager.persistenceQueue = new PersistenceQueue(asyncQueueCapacity, "task-persistence");
+        }
+        if (coalesceWindowMillis > 0) {
+            manager.coalescer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "task-coalescer");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return manager;
     }
 
-    private void loadFromFile(Path saveFile, FileType fileType) throws IOException {
-        BufferedReader br = new BufferedReader(new FileReader(saveFile.toFile()));
-        br.readLine();
+    /**
+     * A crash while an update was moved to a new slot leaves the old slot live as well. The record in the later slot
+     * is the newer one, the earlier slots of the id are blanked.
+     *
+     * @return true if the file was damaged and has been repaired
+     */
+    private boolean loadFromFile(Path saveFile, FileType fileType) throws IOException {
         switch (fileType) {
             case DATA -> {
-                while (br.ready()) {
-                    Task task = taskStringifier.unstringify(br.readLine());
-                    switch (task) {
-                        case Epic e -> epics.put(e.getId(), e);
-                        case Subtask s -> subtasks.put(s.getId(), s);
-                        case Task t -> tasks.put(t.getId(), t);
+                Map<String, RecordIndex.Slot> slots = new HashMap<>();
+                List<RecordIndex.Slot> stale = new ArrayList<>();
+                ParallelRecordReader.Result result = ParallelRecordReader.read(saveFile, recordFormat,
+                        ForkJoinPool.commonPool(), (offset, length, task) -> {
+                            if (task != null) {
+                                restore(task);
+                                RecordIndex.Slot previous = slots.put(task.getId(),
+                                        new RecordIndex.Slot(offset, length));
+                                if (previous != null) {
+                                    stale.add(previous);
+                                }
+                            }
+                        });
+                result.repair(saveFile, recordFormat);
+                if (persistenceMode == PersistenceMode.REWRITE && !stale.isEmpty()) {
+                    try (FileChannel channel = FileChannel.open(saveFile, StandardOpenOption.WRITE)) {
+                        for (RecordIndex.Slot slot : stale) {
+                            writeAt(channel, recordFormat.blankSlot(slot.length()), slot.offset());
+                        }
+                        channel.force(false);
                     }
                 }
+                return result.damaged() || !stale.isEmpty();
             }
-            case HISTORY -> {
-                br.readLine();
-                while (br.ready()) {
-                    String[] values = taskStringifier.unstringifyHistory(br.readLine());
-                    switch (values[0]) {
-                        case "EPIC" -> fileBackedTaskManager.getEpicById(values[1]);
-
-                        case "SUBTASK" -> fileBackedTaskManager.getSubtaskById(values[1]);
+        }
+        return false;
+    }
 
-                        case "TASK" -> fileBackedTaskManager.getTaskById(values[1]);
-                    }
-                }
+    private void restore(Task task) {
+        switch (task) {
+            case Epic e -> epics.put(e.getId(), e);
+            case Subtask s -> {
+                s.freeze();
+                subtasks.put(s.getId(), s);
+            }
+            case Task t -> {
+                t.freeze();
+                tasks.put(t.getId(), t);
             }
         }
-        br.close();
     }
 
-    private Object deserialize(Path serialFile) throws IOException, ClassNotFoundException {
-        try (ObjectInputStream objectInputStream = new ObjectInputStream(Files.newInputStream(serialFile, StandardOpenOption.READ))) {
-            return objectInputStream.readObject();
+    private void applyRecord(LogRecord record) {
+        switch (record.operation()) {
+            case UPSERT -> restore(record.task());
+            case TOMBSTONE -> {
+                String id = record.id();
+                tasks.remove(id);
+                epics.remove(id);
+                subtasks.remove(id);
+            }
         }
     }
 
-    private void serialize(Path serialFile, Object object) throws IOException {
-        try (ObjectOutputStream objectOutputStream = new ObjectOutputStream(Files.newOutputStream(serialFile, StandardOpenOption.WRITE))) {
-            objectOutputStream.writeObject(object);
-            objectOutputStream.flush();
-        }
+    /**
+     * Puts restored subtasks into their epics' lists, recalculates epics and moves the id generator
+     * past every restored id. Epics are independent of each other, so they are linked in parallel.
+     */
+    private void linkSubtasks() {
+        Map<String, List<Subtask>> subtasksByEpic = subtasks.values().parallelStream()
+                .filter(subtask -> subtask.getEpicId() != null)
+                .collect(Collectors.groupingBy(Subtask::getEpicId));
+        epics.values().parallelStream().forEach(epic -> {
+            epic.getSubtasks().clear();
+            epic.getSubtasks().addAll(subtasksByEpic.getOrDefault(epic.getId(), List.of()));
+            epic.resolveEpicData();
+        });
+        Stream.of(tasks.keySet(), epics.keySet(), subtasks.keySet())
+                .flatMap(Collection::parallelStream)
+                .max(Comparator.naturalOrder())
+                .ifPresent(getIdGenerator()::advancePast);
     }
 
-    private void saveLine(Task task) throws ManagerSaveException {
+    private Commit saveLine(Task task) throws ManagerSaveException {
+        return saveLines(List.of(task));
+    }
+
+    /**
+     * Appends the records in one write, they are forced together once the returned commit is awaited.
+     */
+    private Commit saveLines(List<Task> records) throws ManagerSaveException {
         FileLock fileLock = null;
+        long ticket;
         try {
-            if (fileChannel == null) {
-                return;
+            if (fileChannel == null || records.isEmpty()) {
+                return Commit.NONE;
             }
-            fileLock = fileChannel.lock();
-            if (fileChannel.position() == 0) {
-                buffer.put(TaskStringifier.BACKUP_HEADER.getBytes(StandardCharsets.UTF_8));
-                buffer.flip();
-                fileChannel.write(buffer);
-                buffer.clear();
-            }
-            buffer.put(taskStringifier.stringify(task).getBytes(StandardCharsets.UTF_8));
-            buffer.flip();
-            fileChannel.write(buffer);
-            buffer.clear();
-            fileChannel.force(false);
+            fileLock = lockData(fileChannel);
+            long offset = fileChannel.size();
+            Map<String, RecordIndex.Slot> slots = new HashMap<>();
+            long length;
+            try (ChannelWriter writer = ChannelWriter.at(fileChannel, offset)) {
+                if (offset == 0) {
+                    byte[] header = recordFormat.header();
+                    writer.write(header);
+                    offset = header.length;
+                }
+                for (Task task : records) {
+                    byte[] data = recordFormat.encode(task);
+                    int slotLength = RecordIndex.slotLength(data.length);
+                    writer.write(recordFormat.toSlot(data, slotLength));
+                    slots.put(task.getId(), new RecordIndex.Slot(offset, slotLength));
+                    offset += slotLength;
+                }
+                writer.flush();
+                length = writer.written();
+            }
+            slots.forEach(recordIndex::put);
+            ticket = groupCommit.register((int) length);
         } catch (IOException e) {
             throw new ManagerSaveException(e.getMessage(), e);
         } finally {
@@ -201,62 +453,58 @@ public class FileBackedTaskManager extends InMemoryTaskManager implements TaskMa
                 e.printStackTrace();
             }
         }
+        return commit(ticket, () -> fileChannel.force(false));
     }
 
-    private void updateLine(Task task) throws ManagerSaveException {
+    /**
+     * Overwrites the record's slot if the new record fits into it.
+     * Otherwise the record is appended to a new slot and the old slot is blanked,
+     * an old slot left live by a crash in between is blanked on {@link #loadFromFile load}.
+     * Unless flushing is left to the operating system the new slot is forced before the old one is blanked,
+     * so a crash leaves at least one of them live.
+     *
+     * @return commit of the written slots
+     */
+    private Commit updateLine(Task task) throws ManagerSaveException {
+        RecordIndex.Slot slot = recordIndex.get(task.getId());
+        if (slot == null) {
+            return saveLine(task);
+        }
+        byte[] data = recordFormat.encode(task);
         FileLock fileLock = null;
         try {
+            FileChannel channel = raf.getChannel();
             try {
-                fileLock = raf.getChannel().lock();
+                fileLock = lockData(channel);
             } catch (IOException e) {
                 throw new ManagerSaveException("could not acquire lock");
             }
-            long rafLength;
-            long start;
-            try {
-                rafLength = raf.length();
-                start = raf.getFilePointer();
-            } catch (IOException e) {
-                throw new ManagerSaveException("Could not assign RAF params");
-            }
-            long next = start;
-            boolean found;
-            while (next < rafLength) {
+            if (data.length <= slot.length()) {
                 try {
-                    found = raf.readLine().split(TaskStringifier.RECORD_SEPARATOR)[0].equals(task.getId());
-                    next = raf.getFilePointer();
+                    writeAt(channel, recordFormat.toSlot(data, slot.length()), slot.offset());
                 } catch (IOException e) {
-                    throw new ManagerSaveException("could not read RAF", e);
+                    throw new ManagerSaveException("could not overwrite record", e);
                 }
-                if (found) {
-                    int tailSize = (int) (rafLength - next);
-                    byte[] buff = new byte[tailSize];
-                    try {
-                        raf.readFully(buff, 0, tailSize);
-                    } catch (IOException e) {
-                        throw new ManagerSaveException("could not read file's tail");
-                    }
-                    byte[] data = taskStringifier.stringify(task).getBytes(StandardCharsets.UTF_8);
-                    try {
-                        raf.seek(start);
-                        raf.write(data, 0, data.length);
-                    } catch (IOException e) {
-                        throw new ManagerSaveException("could not insert data in RAF");
-                    }
-                    try {
-                        raf.write(buff, 0, tailSize);
-                    } catch (IOException e) {
-                        throw new ManagerSaveException("could not append file's tail");
-                    }
-                    try {
-                        raf.setLength(raf.getFilePointer());
-                    } catch (IOException e) {
-                        throw new ManagerSaveException("could not truncate RAF");
-                    }
-                    break;
+                return commit(groupCommit.register(slot.length()), () -> channel.force(false));
+            }
+            int slotLength = RecordIndex.slotLength(data.length);
+            long offset;
+            try {
+                offset = channel.size();
+                writeAt(channel, recordFormat.toSlot(data, slotLength), offset);
+                if (groupCommit.getDurability() != GroupCommit.Durability.OS) {
+                    channel.force(false);
                 }
-                start = next;
+            } catch (IOException e) {
+                throw new ManagerSaveException("could not append record", e);
             }
+            try {
+                writeAt(channel, recordFormat.blankSlot(slot.length()), slot.offset());
+            } catch (IOException e) {
+                throw new ManagerSaveException("could not blank previous record", e);
+            }
+            recordIndex.put(task.getId(), new RecordIndex.Slot(offset, slotLength));
+            return commit(groupCommit.register(slotLength + slot.length()), () -> channel.force(false));
         } finally {
             try {
                 if (fileLock != null) {
@@ -270,31 +518,24 @@ public class FileBackedTaskManager extends InMemoryTaskManager implements TaskMa
         }
     }
 
-    private void removeLine(Task task) throws ManagerSaveException {
+    /**
+     * Blanks the record's slot.
+     *
+     * @return commit of the blanked slot
+     */
+    private Commit removeLine(Task task) throws ManagerSaveException {
+        RecordIndex.Slot slot = recordIndex.remove(task.getId());
+        if (slot == null) {
+            return Commit.NONE;
+        }
         FileLock fileLock = null;
         try {
-            fileLock = raf.getChannel().lock();
-            long rafLength = raf.length();
-            long start = raf.getFilePointer();
-            long next = start;
-            boolean found;
-            while (next < rafLength) {
-                found = raf.readLine().split(TaskStringifier.RECORD_SEPARATOR)[0].equals(task.getId());
-                next = raf.getFilePointer();
-                if (found) {
-                    int tailSize = (int) (rafLength - next);
-                    byte[] buff = new byte[tailSize];
-                    raf.readFully(buff, 0, tailSize);
-                    raf.seek(start);
-                    raf.write(buff, 0, tailSize);
-                    raf.setLength(raf.getFilePointer());
-                    break;
-                }
-                start = next;
-            }
-
+            FileChannel channel = raf.getChannel();
+            fileLock = lockData(channel);
+            writeAt(channel, recordFormat.blankSlot(slot.length()), slot.offset());
+            return commit(groupCommit.register(slot.length()), () -> channel.force(false));
         } catch (IOException e) {
-            throw new ManagerSaveException();
+            throw new ManagerSaveException("could not blank record", e);
         } finally {
             try {
                 if (fileLock != null) {
@@ -308,26 +549,83 @@ public class FileBackedTaskManager extends InMemoryTaskManager implements TaskMa
         }
     }
 
+    /**
+     * Takes the lease of the files for the life of the manager, the files are then written without per-write locks.
+     */
+    private void takeLease(Path leaseFile) throws IOException, ManagerSaveException {
+        leaseChannel = FileChannel.open(leaseFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+            lease = leaseChannel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            lease = null;
+        }
+        if (lease == null) {
+            leaseChannel.close();
+            leaseChannel = null;
+            throw new ManagerSaveException(leaseFile + " is leased by another manager");
+        }
+    }
+
+    /**
+     * @return lock of the data file, or null if the manager holds the lease
+     */
+    private FileLock lockData(FileChannel channel) throws IOException {
+        return lease == null ? channel.lock() : null;
+    }
+
+    private static void writeAt(FileChannel channel, ByteBuffer data, long position) throws IOException {
+        try (ChannelWriter writer = ChannelWriter.at(channel, position)) {
+            writer.write(data);
+        }
+    }
+
+    /**
+     * Writes the whole state: the data file is rewritten in rewrite mode and compacted in log mode.
+     */
     private void save() throws ManagerSaveException {
+        List<Task> dataList = getData();
+        Map<Integer, long[]> schedule = scheduler.takeDirtyYears();
+        synchronized (writeLock) {
+            // the whole state is written, pending updates are in it
+            pendingUpdates.clear();
+        }
+        persist(() -> {
+            switch (persistenceMode) {
+                case REWRITE -> rewrite(dataList);
+                case LOG -> compact(dataList);
+            }
+            if (scheduleStore == null) {
+                return Commit.NONE;
+            }
+            try {
+                scheduleStore.write(schedule);
+            } catch (IOException e) {
+                scheduler.markDirty(schedule.keySet());
+                throw new ManagerSaveException("could not write schedule", e);
+            }
+            return Commit.NONE;
+        });
+    }
+
+    private void rewrite(List<Task> dataList) throws ManagerSaveException {
         FileLock fileLock = null;
         try {
-            fileLock = fileChannel.lock();
+            fileLock = lockData(fileChannel);
             fileChannel.truncate(0);
-            buffer.put(TaskStringifier.BACKUP_HEADER.getBytes(StandardCharsets.UTF_8));
-            buffer.flip();
-            fileChannel.write(buffer);
-            buffer.clear();
-            List<Task> dataList = super.getAllTasks();
-            dataList.addAll(super.getAllEpics());
-            dataList.addAll(super.getAllSubtasks());
-            for (Task task : dataList) {
-                buffer.put(taskStringifier.stringify(task).getBytes(StandardCharsets.UTF_8));
-                buffer.flip();
-                fileChannel.write(buffer);
-                buffer.clear();
+            recordIndex.clear();
+            try (ChannelWriter writer = ChannelWriter.at(fileChannel, 0)) {
+                byte[] header = recordFormat.header();
+                writer.write(header);
+                long offset = header.length;
+                for (Task task : dataList) {
+                    byte[] data = recordFormat.encode(task);
+                    int slotLength = RecordIndex.slotLength(data.length);
+                    writer.write(recordFormat.toSlot(data, slotLength));
+                    recordIndex.put(task.getId(), new RecordIndex.Slot(offset, slotLength));
+                    offset += slotLength;
+                }
             }
             fileChannel.force(false);
-            serialize(this.scheduleFile, this.scheduler);
         } catch (IOException e) {
             throw new ManagerSaveException();
         } finally {
@@ -343,70 +641,484 @@ public class FileBackedTaskManager extends InMemoryTaskManager implements TaskMa
         }
     }
 
-    private void saveHistory() throws ManagerSaveException {
-        FileLock fileLock = null;
+    /**
+     * Appends the record and starts a compaction once the log outgrows the threshold.
+     * The compaction needs the state matching the log, so on the persistence thread it is only marked due
+     * and {@link #scheduleCompaction() scheduled} by the next mutation.
+     */
+    private Commit appendRecord(LogRecord record) throws ManagerSaveException {
+        return appendRecords(List.of(record));
+    }
+
+    private Commit appendRecords(List<LogRecord> records) throws ManagerSaveException {
+        if (records.isEmpty()) {
+            return Commit.NONE;
+        }
+        long ticket;
         try {
-            try {
-                fileLock = historyFileChannel.lock();
-            } catch (IOException e) {
-                throw new ManagerSaveException("could not acquire lock", e);
+            ticket = taskLog.write(records);
+            if (taskLog.size() >= compactionThreshold) {
+                if (persistenceQueue == null && !deferCompaction) {
+                    compactInBackground(getData());
+                } else {
+                    compactionDue = true;
+                }
             }
+        } catch (IOException e) {
+            throw new ManagerSaveException("could not append to log", e);
+        }
+        return () -> {
             try {
-                historyFileChannel.truncate(0);
+                taskLog.await(ticket);
             } catch (IOException e) {
-                throw new ManagerSaveException("could not truncate history file channel");
+                throw new ManagerSaveException("could not commit record", e);
             }
-            buffer.put(TaskStringifier.BACKUP_HEADER.getBytes(StandardCharsets.UTF_8));
-            buffer.flip();
-            try {
-                historyFileChannel.write(buffer);
-            } catch (IOException e) {
-                throw new ManagerSaveException("error on writing header in file", e);
+        };
+    }
+
+    /**
+     * Captures the state on the calling thread and queues the compaction behind the records written so far,
+     * so the log sealed by the compaction holds exactly the records reflected in the captured state.
+     */
+    private void scheduleCompaction() throws ManagerSaveException {
+        if (!compactionDue) {
+            return;
+        }
+        compactionDue = false;
+        List<Task> dataList = getData();
+        persist(() -> {
+            compactInBackground(dataList);
+            return Commit.NONE;
+        });
+    }
+
+    /**
+     * Seals the log and folds the given state into a fresh snapshot on the compactor thread.
+     * Nothing is done while a previous compaction is still running.
+     */
+    private void compactInBackground(List<Task> dataList) throws ManagerSaveException {
+        if (compaction != null && !compaction.isDone()) {
+            return;
+        }
+        try {
+            if (!taskLog.seal()) {
+                compact(dataList);
+                return;
             }
-            buffer.clear();
-            List<? extends Task> dataList = super.getHistory();
-            for (Task task : dataList) {
-                buffer.put(taskStringifier.stringify(task).getBytes(StandardCharsets.UTF_8));
-                buffer.flip();
-                try {
-                    historyFileChannel.write(buffer);
-                } catch (IOException e) {
-                    throw new ManagerSaveException("error on writing data in file");
+        } catch (IOException e) {
+            throw new ManagerSaveException("could not seal log", e);
+        }
+        compaction = compactor.submit(() -> {
+            writeSnapshot(dataList);
+            taskLog.dropSealed();
+            return null;
+        });
+    }
+
+    /**
+     * Writes a snapshot of the given state and empties the log.
+     */
+    private void compact(List<Task> dataList) throws ManagerSaveException {
+        awaitCompaction();
+        try {
+            writeSnapshot(dataList);
+            taskLog.reset();
+        } catch (IOException e) {
+            throw new ManagerSaveException("compaction error", e);
+        }
+    }
+
+    private void awaitCompaction() throws ManagerSaveException {
+        if (compaction == null) {
+            return;
+        }
+        try {
+            compaction.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ManagerSaveException("interrupted while waiting for compaction", e);
+        } catch (ExecutionException e) {
+            throw new ManagerSaveException("compaction error", e.getCause());
+        } finally {
+            compaction = null;
+        }
+    }
+
+    private List<Task> getData() {
+        List<Task> dataList = super.getAllTasks();
+        dataList.addAll(super.getAllEpics());
+        dataList.addAll(super.getAllSubtasks());
+        return dataList;
+    }
+
+    /**
+     * Writes the snapshot next to the data file and atomically replaces the data file with it.
+     * Only log mode compresses the data file, rewrite mode edits it in place.
+     */
+    private void writeSnapshot(List<Task> dataList) throws IOException {
+        Path tmpFile = saveFile.resolveSibling(saveFile.getFileName() + ".tmp");
+        writeDataFile(tmpFile, dataList, List.of(), persistenceMode == PersistenceMode.LOG ? compressionLevel : 0);
+        Files.move(tmpFile, saveFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Writes a data file of the given tasks and already encoded records and forces it.
+     * The file is {@link CompressedRecordFile compressed} unless the level is zero.
+     */
+    private void writeDataFile(Path file, List<Task> dataList, List<byte[]> records, int compressionLevel)
+            throws IOException {
+        try (FileChannel dataChannel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+             OutputStream out = new BufferedOutputStream(Channels.newOutputStream(dataChannel))) {
+            if (compressionLevel == 0) {
+                out.write(recordFormat.header());
+                for (Task task : dataList) {
+                    out.write(recordFormat.encode(task));
+                }
+                for (byte[] record : records) {
+                    out.write(record);
+                }
+            } else {
+                try (CompressedRecordFile.Writer writer = new CompressedRecordFile.Writer(out, recordFormat,
+                        compressionLevel)) {
+                    for (Task task : dataList) {
+                        writer.write(recordFormat.encode(task));
+                    }
+                    for (byte[] record : records) {
+                        writer.write(record);
+                    }
                 }
-                buffer.clear();
             }
+            out.flush();
+            dataChannel.force(true);
+        }
+    }
+
+    /**
+     * @return a new directory under {@code backupPath} to {@link #backup(Path) back up} into
+     */
+    public Path newBackupDir() {
+        return backupPath.resolve("backup-" + LocalDateTime.now().format(BACKUP_NAME_FORMATTER));
+    }
+
+    /**
+     * Captures the state at this point and writes it on a background thread into the target directory:
+     * a data file, a history file and a schedule file named like the manager's own files,
+     * which the manager can be opened from.
+     * <p>
+     * Tasks and subtasks are replaced, never modified, on update, so the capture keeps references to them
+     * and they are encoded by the background thread. Epics are modified in place and are encoded at once.
+     * Writes go on while the backup is written.
+     *
+     * @return future completed with the target directory once the backup is durable
+     */
+    public CompletableFuture<Path> backup(Path targetDir) {
+        List<Task> dataList = new ArrayList<>(tasks.size() + subtasks.size());
+        dataList.addAll(tasks.values());
+        dataList.addAll(subtasks.values());
+        List<byte[]> epicRecords = epics.values().stream().map(recordFormat::encode).toList();
+        List<String> history = getHistory().stream().map(Task::getId).toList();
+        Map<Integer, long[]> schedule = scheduler.copyYears();
+        return CompletableFuture.supplyAsync(() -> {
             try {
-                historyFileChannel.force(false);
+                Files.createDirectories(targetDir);
+                writeDataFile(targetDir.resolve(saveFile.getFileName()), dataList, epicRecords, compressionLevel);
+                HistoryJournal.write(targetDir.resolve(saveHistoryFile.getFileName()), history);
+                ScheduleStore.writeSnapshot(targetDir.resolve(scheduleFile.getFileName()), schedule);
+                return targetDir;
             } catch (IOException e) {
-                throw new ManagerSaveException("flushing error");
+                throw new CompletionException(new ManagerSaveException("backup error", e));
             }
-        } finally {
-            try {
-                if (fileLock != null) {
-                    fileLock.release();
-                    fileLock.close();
+        }, backupWriter());
+    }
+
+    private ExecutorService backupWriter() {
+        if (backupWriter == null) {
+            backupWriter = Executors.newSingleThreadExecutor(r -> {
+                Thread thread = new Thread(r, "task-backup");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return backupWriter;
+    }
+
+    private void persistCreated(Task task) throws ManagerSaveException {
+        Task record = detach(task);
+        persist(() -> switch (persistenceMode) {
+            case REWRITE -> saveLine(record);
+            case LOG -> appendRecord(LogRecord.upsert(record));
+        });
+        scheduleCompaction();
+    }
+
+    private void persistUpdated(Task task) throws ManagerSaveException {
+        if (coalescer != null) {
+            coalesce(task.clone());
+        } else {
+            persist(updateWrite(detach(task)));
+        }
+        scheduleCompaction();
+    }
+
+    private Write updateWrite(Task record) {
+        return () -> switch (persistenceMode) {
+            case REWRITE -> updateLine(record);
+            case LOG -> appendRecord(LogRecord.upsert(record));
+        };
+    }
+
+    /**
+     * Removes the record of the task, a deleted epic's subtasks are removed with it in the same write.
+     */
+    private void persistRemoved(Task task) throws ManagerSaveException {
+        List<Task> removed = new ArrayList<>();
+        removed.add(task);
+        if (task instanceof Epic epic) {
+            removed.addAll(epic.getSubtasks());
+        }
+        Commit commit;
+        synchronized (writeLock) {
+            removed.forEach(record -> pendingUpdates.remove(record.getId()));
+            commit = submit(() -> switch (persistenceMode) {
+                case REWRITE -> {
+                    List<Commit> commits = new ArrayList<>(removed.size());
+                    for (Task record : removed) {
+                        commits.add(removeLine(record));
+                    }
+                    yield Commit.all(commits);
+                }
+                case LOG -> appendRecords(removed.stream()
+                        .map(record -> LogRecord.tombstone(record.getId()))
+                        .toList());
+            });
+        }
+        commit.await();
+        scheduleCompaction();
+    }
+
+    /**
+     * Writes the changes of a batch at once: one append to the log, or in rewrite mode the changed slots
+     * in place and the new records in one write, forced together. Pending updates of the changed tasks
+     * are dropped, the batch holds their latest state.
+     */
+    private void persistBatch(Collection<? extends Task> upserted, Collection<? extends Task> removed)
+            throws ManagerSaveException {
+        List<Task> records = upserted.stream().map(this::detach).toList();
+        Commit commit;
+        synchronized (writeLock) {
+            records.forEach(record -> pendingUpdates.remove(record.getId()));
+            removed.forEach(task -> pendingUpdates.remove(task.getId()));
+            commit = submit(() -> switch (persistenceMode) {
+                case REWRITE -> {
+                    List<Task> created = new ArrayList<>();
+                    List<Commit> commits = new ArrayList<>();
+                    for (Task record : records) {
+                        if (recordIndex.get(record.getId()) == null) {
+                            created.add(record);
+                        } else {
+                            commits.add(updateLine(record));
+                        }
+                    }
+                    for (Task task : removed) {
+                        commits.add(removeLine(task));
+                    }
+                    commits.add(saveLines(created));
+                    yield Commit.all(commits);
+                }
+                case LOG -> appendRecords(Stream.concat(
+                        records.stream().map(LogRecord::upsert),
+                        removed.stream().map(task -> LogRecord.tombstone(task.getId()))).toList());
+            });
+        }
+        commit.await();
+        scheduleCompaction();
+    }
+
+    /**
+     * Keeps the latest state of the task until the coalescing window started by the first pending update ends,
+     * all updates of the task within the window are written once.
+     */
+    private void coalesce(Task record) {
+        synchronized (writeLock) {
+            pendingUpdates.put(record.getId(), record);
+            if (!flushScheduled) {
+                flushScheduled = true;
+                coalescer.schedule(this::flushCoalesced, coalesceWindowMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Writes the pending updates on the coalescer thread. A compaction due is left to the next mutation,
+     * which captures the state on the thread owning it.
+     */
+    private void flushCoalesced() {
+        try {
+            Commit commit;
+            synchronized (writeLock) {
+                flushScheduled = false;
+                deferCompaction = true;
+                try {
+                    commit = submitPending();
+                } finally {
+                    deferCompaction = false;
                 }
+            }
+            commit.await();
+        } catch (ManagerSaveException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void writePending() throws ManagerSaveException {
+        Commit commit;
+        synchronized (writeLock) {
+            commit = submitPending();
+        }
+        commit.await();
+    }
+
+    /**
+     * Writes the pending updates, the caller holds the write lock.
+     *
+     * @return commit of the updates
+     */
+    private Commit submitPending() throws ManagerSaveException {
+        List<Task> updates = new ArrayList<>(pendingUpdates.values());
+        pendingUpdates.clear();
+        List<Commit> commits = new ArrayList<>(updates.size());
+        for (Task record : updates) {
+            commits.add(submit(updateWrite(record)));
+        }
+        return Commit.all(commits);
+    }
+
+    /**
+     * @return the task itself when writing synchronously, a copy when the write is queued
+     * and the task may change before it is written
+     */
+    private Task detach(Task task) {
+        return persistenceQueue == null ? task : task.clone();
+    }
+
+    /**
+     * Does the write under the write lock and waits until it is durable once the lock is released,
+     * so that writes of other threads can join the same {@link GroupCommit group commit}.
+     */
+    private void persist(Write write) throws ManagerSaveException {
+        Commit commit;
+        synchronized (writeLock) {
+            commit = submit(write);
+        }
+        commit.await();
+    }
+
+    /**
+     * Does the write on the calling thread, or queues it in async mode, the caller holds the write lock.
+     * Failures of queued writes are reported by the future returned from {@link #persisted()}.
+     *
+     * @return commit of a write done on the calling thread, to be awaited once the write lock is released
+     */
+    private Commit submit(Write write) throws ManagerSaveException {
+        if (persistenceQueue == null) {
+            return write.run();
+        }
+        try {
+            persistenceQueue.submit(() -> write.run().await()).whenComplete((result, e) -> {
+                if (e != null) {
+                    e.printStackTrace();
+                }
+            });
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ManagerSaveException("interrupted while queueing a write", e);
+        }
+        return Commit.NONE;
+    }
+
+    private Commit commit(long ticket, GroupCommit.Flush flush) {
+        return () -> {
+            try {
+                groupCommit.await(ticket, flush);
             } catch (IOException e) {
-                e.printStackTrace();
+                throw new ManagerSaveException("could not commit record", e);
             }
+        };
+    }
 
+    /**
+     * Writes the updates waiting for their coalescing window to end.
+     *
+     * @return future completed once every change made so far is written, completed at once if writes are
+     * synchronous
+     */
+    public CompletableFuture<Void> persisted() {
+        try {
+            writePending();
+        } catch (ManagerSaveException e) {
+            return CompletableFuture.failedFuture(e);
         }
+        return persistenceQueue == null ? CompletableFuture.completedFuture(null) : persistenceQueue.flush();
+    }
+
+    /**
+     * @return metrics of the persistence queue, empty if writes are synchronous
+     */
+    public Optional<PersistenceQueue.Metrics> getPersistenceMetrics() {
+        return Optional.ofNullable(persistenceQueue).map(PersistenceQueue::metrics);
+    }
+
+    GroupCommit groupCommit() {
+        return groupCommit;
     }
 
     @Override
     public void close() throws Exception {
-        serialize(this.scheduleFile, this.scheduler);
+        if (this.coalescer != null) {
+            this.coalescer.shutdownNow();
+            this.coalescer.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            writePending();
+        }
+        if (this.backupWriter != null) {
+            this.backupWriter.shutdown();
+            this.backupWriter.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        }
+        if (this.persistenceQueue != null) {
+            this.persistenceQueue.close();
+        }
+        if (this.taskLog != null) {
+            try {
+                awaitCompaction();
+            } finally {
+                this.compactor.shutdown();
+                this.taskLog.close();
+            }
+        }
+        if (this.scheduleStore != null) {
+            this.scheduleStore.write(this.scheduler.takeDirtyYears());
+            this.scheduleStore.close();
+        }
         if (this.fileChannel != null && this.fileChannel.isOpen()) {
             this.fileChannel.close();
         }
         if (this.raf != null) {
             this.raf.close();
         }
-        if (this.historyFileChannel != null && this.historyFileChannel.isOpen()) {
-            saveHistory();
-            this.historyFileChannel.close();
+        if (this.recordIndex != null) {
+            this.recordIndex.store(saveFile);
+        }
+        if (this.historyJournal != null) {
+            this.historyJournal.close();
+        }
+        if (this.leaseChannel != null) {
+            this.leaseChannel.close();
+        }
+        synchronized (FileBackedTaskManager.class) {
+            if (fileBackedTaskManager == this) {
+                fileBackedTaskManager = null;
+            }
         }
-        fileBackedTaskManager = null;
     }
 
     @Override
@@ -415,7 +1127,7 @@ public class FileBackedTaskManager extends InMemoryTaskManager implements TaskMa
             return false;
         }
         try {
-            saveLine(task);
+            persistCreated(task);
         } catch (ManagerSaveException e) {
             e.printStackTrace();
         }
@@ -428,7 +1140,7 @@ public class FileBackedTaskManager extends InMemoryTaskManager implements TaskMa
             return false;
         }
         try {
-            saveLine(epic);
+            persistCreated(epic);
         } catch (ManagerSaveException e) {
             e.printStackTrace();
         }
@@ -441,7 +1153,7 @@ public class FileBackedTaskManager extends InMemoryTaskManager implements TaskMa
             return false;
         }
         try {
-            saveLine(subtask);
+            persistCreated(subtask);
         } catch (ManagerSaveException e) {
             e.printStackTrace();
         }
@@ -454,7 +1166,7 @@ public class FileBackedTaskManager extends InMemoryTaskManager implements TaskMa
             return false;
         }
         try {
-            updateLine(task);
+            persistUpdated(task);
         } catch (ManagerSaveException e) {
             e.printStackTrace();
         }
@@ -467,7 +1179,7 @@ public class FileBackedTaskManager extends InMemoryTaskManager implements TaskMa
             return false;
         }
         try {
-            updateLine(epic);
+            persistUpdated(epics.get(epic.getId()));
         } catch (ManagerSaveException e) {
             e.printStackTrace();
         }
@@ -480,7 +1192,7 @@ public class FileBackedTaskManager extends InMemoryTaskManager implements TaskMa
             return false;
         }
         try {
-            updateLine(subtask);
+            persistUpdated(subtask);
         } catch (ManagerSaveException e) {
             e.printStackTrace();
         }
@@ -494,7 +1206,7 @@ public class FileBackedTaskManager extends InMemoryTaskManager implements TaskMa
             return null;
         }
         try {
-            removeLine(deleted);
+            persistRemoved(deleted);
         } catch (ManagerSaveException e) {
             e.printStackTrace();
         }
@@ -508,7 +1220,7 @@ public class FileBackedTaskManager extends InMemoryTaskManager implements TaskMa
             return null;
         }
         try {
-            removeLine(deleted);
+            persistRemoved(deleted);
         } catch (ManagerSaveException e) {
             e.printStackTrace();
         }
@@ -522,7 +1234,49 @@ public class FileBackedTaskManager extends InMemoryTaskManager implements TaskMa
             return null;
         }
         try {
-            removeLine(deleted);
+            persistRemoved(deleted);
+        } catch (ManagerSaveException e) {
+            e.printStackTrace();
+        }
+        return deleted;
+    }
+
+    @Override
+    public boolean createAll(Collection<? extends Task> items) {
+        if (!super.createAll(items)) {
+            return false;
+        }
+        try {
+            persistBatch(items, List.of());
+        } catch (ManagerSaveException e) {
+            e.printStackTrace();
+        }
+        return true;
+    }
+
+    @Override
+    public boolean updateAll(Collection<? extends Task> items) {
+        if (!super.updateAll(items)) {
+            return false;
+        }
+        try {
+            persistBatch(items.stream()
+                    .map(item -> item instanceof Epic epic ? epics.get(epic.getId()) : item)
+                    .toList(), List.of());
+        } catch (ManagerSaveException e) {
+            e.printStackTrace();
+        }
+        return true;
+    }
+
+    @Override
+    public List<Task> deleteAll(Collection<String> ids) {
+        List<Task> deleted = super.deleteAll(ids);
+        if (deleted == null) {
+            return null;
+        }
+        try {
+            persistBatch(List.of(), deleted);
         } catch (ManagerSaveException e) {
             e.printStackTrace();
         }
@@ -539,7 +1293,6 @@ public class FileBackedTaskManager extends InMemoryTaskManager implements TaskMa
         boolean allCleaned = super.deleteAllTasks();
         try {
             save();
-            saveHistory();
         } catch (ManagerSaveException e) {
             e.printStackTrace();
         }
@@ -551,7 +1304,6 @@ public class FileBackedTaskManager extends InMemoryTaskManager implements TaskMa
         boolean allCleaned = super.deleteAllEpics();
         try {
             save();
-            saveHistory();
         } catch (ManagerSaveException e) {
             e.printStackTrace();
         }
@@ -563,18 +1315,53 @@ public class FileBackedTaskManager extends InMemoryTaskManager implements TaskMa
         boolean allCleaned = super.deleteAllSubTasks();
         try {
             save();
-            saveHistory();
         } catch (ManagerSaveException e) {
             e.printStackTrace();
         }
         return allCleaned;
     }
 
+    @FunctionalInterface
+    private interface Write {
+        /**
+         * @return commit to await once the write lock is released
+         */
+        Commit run() throws ManagerSaveException;
+    }
+
+    /**
+     * Waits until a write is durable.
+     */
+    @FunctionalInterface
+    private interface Commit {
+        Commit NONE = () -> {
+        };
+
+        void await() throws ManagerSaveException;
+
+        static Commit all(List<Commit> commits) {
+            return () -> {
+                for (Commit commit : commits) {
+                    commit.await();
+                }
+            };
+        }
+    }
+
     public enum FileType {
         DATA,
         HISTORY
     }
 
+    /**
+     * REWRITE keeps the data file as a list of current records and edits it in place,
+     * LOG appends every mutation to a log which is compacted into the data file in background.
+     */
+    public enum PersistenceMode {
+        REWRITE,
+        LOG
+    }
+
     public static class ManagerSaveException extends Exception {
         public ManagerSaveException() {
             super();
@@ -11,4 +11,9 @@ public interface HistoryManager {
 
     void remove(Task task);
 
+    /**
+     * Replaces the history with the given tasks, oldest first.
+     */
+    void restore(List<Task> history);
+
 }
@@ -29,6 +29,11 @@ public class InMemoryHistoryManager implements HistoryManager {
         return history.getHistoryQueue();
     }
 
+    @Override
+    public void restore(List<Task> tasks) {
+        history.load(tasks);
+    }
+
     private static class HistoryQueue {
         private static final int capacity = 16;
         private static final double loadFactor = 0.75;
@@ -59,16 +64,16 @@ public class InMemoryHistoryManager implements HistoryManager {
                 }
                 last = queue[current];
                 queueRegister.put(id, current++);
-                if (current >= loadFactor * capacity) {
-                    Node[] nodes = new Node[capacity + (capacity >> 1)];
+                if (current >= loadFactor * queue.length) {
+                    Node[] nodes = new Node[queue.length + (queue.length >> 1)];
                     System.arraycopy(queue, 0, nodes, 0, current);
                     queue = nodes;
                 }
             } else {
                 int presentId = queueRegister.get(id);
                 Node p = queue[presentId];
-                if (!last.equals(p)) {
-                    if (!first.equals(p)) {
+                if (last != p) {
+                    if (first != p) {
                         p.prev.next = p.next;
                         p.next.prev = p.prev;
                     } else {
@@ -83,6 +88,33 @@ public class InMemoryHistoryManager implements HistoryManager {
             }
         }
 
+        /**
+         * Replaces the queue with the tasks, allocating the node array once. A task repeated in the list
+         * is moved to its last position, as {@link #add(Task) add} does.
+         */
+        public void load(List<Task> tasks) {
+            queueRegister.clear();
+            queue = new Node[Math.max(capacity, (int) (tasks.size() / loadFactor) + 1)];
+            first = null;
+            last = null;
+            current = 0;
+            for (Task task : tasks) {
+                if (queueRegister.containsKey(task.getId())) {
+                    add(task);
+                    continue;
+                }
+                Node node = new Node(null, last, task);
+                if (last == null) {
+                    first = node;
+                } else {
+                    last.next = node;
+                }
+                last = node;
+                queue[current] = node;
+                queueRegister.put(task.getId(), current++);
+            }
+        }
+
         public List<Task> getHistoryQueue() {
             List<Task> taskList = new ArrayList<>();
             Node c = first;
@@ -104,8 +136,8 @@ public class InMemoryHistoryManager implements HistoryManager {
             }
             int pos = queueRegister.get(id);
             Node p = queue[pos];
-            if (!last.equals(p)) {
-                if (!first.equals(p)) {
+            if (last != p) {
+                if (first != p) {
                     p.prev.next = p.next;
                     p.next.prev = p.prev;
                 } else {
@@ -118,7 +150,7 @@ public class InMemoryHistoryManager implements HistoryManager {
                     if (val > pos) queueRegister.put(qId, val - 1);
                 }
             } else {
-                if (!first.equals(p)) {
+                if (first != p) {
                     p.prev.next = null;
                     last = p.prev;
                 } else {
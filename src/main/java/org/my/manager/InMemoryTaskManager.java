@@ -10,42 +10,73 @@ import org.my.util.IdGenerator;
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.*;
-import java.util.function.Predicate;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 
 public class InMemoryTaskManager implements TaskManager {
-    private final Map<String, Task> tasks = new HashMap<>();
-    private final Map<String, Epic> epics = new HashMap<>();
-    private final Map<String, Subtask> subtasks = new HashMap<>();
+    private static final Comparator<Task> PRIORITY =
+            Comparator.comparing(Task::getStartTime).thenComparing(Task::getId);
+
+    protected final Map<String, Task> tasks;
+    protected final Map<String, Epic> epics;
+    protected final Map<String, Subtask> subtasks;
     private final HistoryManager historyManager;
     protected Scheduler scheduler;
     private final IdGenerator idGenerator = new IdGenerator();
+    private final NavigableSet<Task> prioritized = new ConcurrentSkipListSet<>(PRIORITY);
+    private final Map<Status, Set<String>> byStatus = new EnumMap<>(Status.class);
+    private final SearchIndex searchIndex = new SearchIndex();
 
 
     public InMemoryTaskManager() {
-        this.historyManager = Managers.getDefaultHistory();
+        this(Managers.getDefaultHistory());
+    }
+
+    protected InMemoryTaskManager(HistoryManager historyManager) {
+        this(historyManager, new HashMap<>(), new HashMap<>(), new HashMap<>());
+    }
+
+    /**
+     * @param tasks    - empty map the tasks are kept in
+     * @param epics    - empty map the epics are kept in
+     * @param subtasks - empty map the subtasks are kept in
+     */
+    protected InMemoryTaskManager(HistoryManager historyManager, Map<String, Task> tasks,
+                                  Map<String, Epic> epics, Map<String, Subtask> subtasks) {
+        this.historyManager = historyManager;
         this.scheduler = Managers.getScheduleManager();
+        this.tasks = tasks;
+        this.epics = epics;
+        this.subtasks = subtasks;
+        for (Status status : Status.values()) {
+            byStatus.put(status, ConcurrentHashMap.newKeySet());
+        }
     }
 
     public IdGenerator getIdGenerator() {
         return idGenerator;
     }
 
+    /**
+     * Tasks and subtasks are stored {@link Task#freeze() frozen} and returned as they are,
+     * epics are returned as frozen {@link Epic#snapshot() snapshots}. Returned tasks are edited through clones.
+     */
     @Override
     public List<Task> getAllTasks() {
-        return tasks.values().stream().map(Task::clone).collect(Collectors.toList());
+        return new ArrayList<>(tasks.values());
     }
 
     @Override
     public List<Epic> getAllEpics() {
-        return epics.values().stream().map(x -> (Epic) x.clone()).collect(Collectors.toList());
+        return epics.values().stream().map(this::snapshot).collect(Collectors.toList());
     }
 
     @Override
     public List<Subtask> getAllSubtasks() {
-        return subtasks.values().stream().map(x -> (Subtask) x.clone()).collect(Collectors.toList());
+        return new ArrayList<>(subtasks.values());
     }
 
     @Override
@@ -54,9 +85,8 @@ public class InMemoryTaskManager implements TaskManager {
         if (found == null) {
             return Optional.empty();
         }
-        Task task = found.clone();
-        historyManager.addTask(task);
-        return Optional.of(task);
+        historyManager.addTask(found);
+        return Optional.of(found);
     }
 
     @Override
@@ -65,7 +95,7 @@ public class InMemoryTaskManager implements TaskManager {
         if (found == null) {
             return Optional.empty();
         }
-        Epic epic = (Epic) found.clone();
+        Epic epic = found.snapshot();
         historyManager.addTask(epic);
         return Optional.of(epic);
     }
@@ -76,19 +106,159 @@ public class InMemoryTaskManager implements TaskManager {
         if (found == null) {
             return Optional.empty();
         }
-        Subtask sub = (Subtask) found.clone();
-        historyManager.addTask(sub);
-        return Optional.of(sub);
+        historyManager.addTask(found);
+        return Optional.of(found);
     }
 
+    /**
+     * Replaces the browsing history with the tasks of the given ids, oldest first, without clones or lookups
+     * through the getters. Ids of missing tasks are skipped.
+     */
+    protected void restoreHistory(List<String> ids) {
+        List<Task> history = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            Task task = tasks.get(id);
+            if (task == null) {
+                task = epics.get(id);
+            }
+            if (task == null) {
+                task = subtasks.get(id);
+            }
+            if (task != null) {
+                history.add(task);
+            }
+        }
+        historyManager.restore(history);
+    }
+
+    /**
+     * Tasks and subtasks with a start time are kept sorted by start time and id as they change,
+     * so prioritized tasks are read in order without sorting.
+     */
     public List<Task> getPrioritizedTasks() {
-        Predicate<Task> nullPredicate = x -> x.getStartTime() != null;
-        return Stream.concat(
-                        tasks.values().stream().filter(nullPredicate),
-                        subtasks.values().stream().filter(nullPredicate)
-                )
-                .sorted(Comparator.comparing(Task::getStartTime))
-                .toList();
+        return List.copyOf(prioritized);
+    }
+
+    @Override
+    public List<Task> getPrioritizedTasks(LocalDateTime from, int limit) {
+        return prioritized.tailSet(probe(from), true).stream().limit(limit).toList();
+    }
+
+    @Override
+    public List<Task> getPrioritizedTasks(LocalDateTime from, LocalDateTime to) {
+        if (!from.isBefore(to)) {
+            return List.of();
+        }
+        return List.copyOf(prioritized.subSet(probe(from), true, probe(to), false));
+    }
+
+    /**
+     * @return task sorted before every task starting at the given time
+     */
+    private static Task probe(LocalDateTime startTime) {
+        return new Task(null, null, "", null, startTime);
+    }
+
+    /**
+     * Ids are kept per status as tasks change and epics roll up their subtasks,
+     * so tasks of a status are found without going through the others.
+     */
+    @Override
+    public List<Task> getTasksByStatus(Status status) {
+        return find(byStatus.get(status));
+    }
+
+    /**
+     * Titles and descriptions are kept in an inverted index as tasks change,
+     * so a query reads only the tasks containing its words.
+     */
+    @Override
+    public List<Task> search(String query, int limit) {
+        return find(searchIndex.search(query, limit));
+    }
+
+    /**
+     * @return tasks, subtasks and epic snapshots of the ids, ids of missing tasks are skipped
+     */
+    private List<Task> find(Collection<String> ids) {
+        List<Task> found = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            Task task = tasks.get(id);
+            if (task == null) {
+                task = subtasks.get(id);
+            }
+            if (task == null) {
+                Epic epic = epics.get(id);
+                task = epic == null ? null : snapshot(epic);
+            }
+            if (task != null) {
+                found.add(task);
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public Map<Status, Integer> countByStatus() {
+        Map<Status, Integer> counts = new EnumMap<>(Status.class);
+        byStatus.forEach((status, ids) -> counts.put(status, ids.size()));
+        return counts;
+    }
+
+    /**
+     * @return frozen copy of the stored epic
+     */
+    protected Epic snapshot(Epic epic) {
+        return epic.snapshot();
+    }
+
+    /**
+     * Replaces the old version of the task or subtask with the new one in the indexes, either may be null.
+     */
+    protected void reindex(Task old, Task task) {
+        if (old != null) {
+            if (old.getStartTime() != null) {
+                prioritized.remove(old);
+            }
+            restatus(old.getId(), old.getStatus(), null);
+        }
+        if (task != null) {
+            if (task.getStartTime() != null) {
+                prioritized.add(task);
+            }
+            restatus(task.getId(), null, task.getStatus());
+        }
+        searchIndex.update(old, task);
+    }
+
+    /**
+     * Moves the id from the old status to the new one in the status index, either may be null.
+     */
+    private void restatus(String id, Status old, Status status) {
+        if (old == status) {
+            return;
+        }
+        if (old != null) {
+            byStatus.get(old).remove(id);
+        }
+        if (status != null) {
+            byStatus.get(status).add(id);
+        }
+    }
+
+    /**
+     * Rebuilds the priority, status and search indexes from the stored tasks.
+     */
+    protected void rebuildIndexes() {
+        prioritized.clear();
+        byStatus.values().forEach(Set::clear);
+        searchIndex.clear();
+        Stream.concat(tasks.values().stream(), subtasks.values().stream())
+                .forEach(task -> reindex(null, task));
+        epics.values().forEach(epic -> {
+            restatus(epic.getId(), null, epic.getStatus());
+            searchIndex.update(null, epic);
+        });
     }
 
     @Override
@@ -107,7 +277,9 @@ public class InMemoryTaskManager implements TaskManager {
             return false;
         }
         Task newTask = task.clone();
+        newTask.freeze();
         tasks.put(task.getId(), newTask);
+        reindex(null, newTask);
         return true;
     }
 
@@ -128,6 +300,8 @@ public class InMemoryTaskManager implements TaskManager {
             newEpic.setStatus(Status.NEW);
         }
         epics.put(epic.getId(), newEpic);
+        restatus(newEpic.getId(), null, newEpic.getStatus());
+        searchIndex.update(null, newEpic);
         return true;
     }
 
@@ -151,54 +325,31 @@ public class InMemoryTaskManager implements TaskManager {
             return false;
         }
         Subtask newSubtask = (Subtask) subtask.clone();
+        newSubtask.freeze();
         subtasks.put(subtask.getId(), newSubtask);
-        //update epic's status
+        reindex(null, newSubtask);
         Status parentStatus = parent.getStatus();
-        List<Subtask> subs = parent.getSubtasks();
-        Status newStatus = newSubtask.getStatus();
-        if (!newStatus.equals(parentStatus) && !parentStatus.equals(Status.IN_PROGRESS)) {
-            newStatus = Status.IN_PROGRESS;
-        }
-        parent.setStatus(newStatus);
-        //update epic's date and time
-        updateEpicTime(subtask, parent, subtask.getStartTime(), subtask.getEndTime());
-        subs.add(newSubtask);
+        parent.addSubtask(newSubtask);
+        restatus(parent.getId(), parentStatus, parent.getStatus());
         return true;
     }
 
-    private void updateEpicTime(Subtask subtask, Epic parent, LocalDateTime subtaskStartTime, LocalDateTime subtaskEndTime) {
-        LocalDateTime parentStartTime = parent.getStartTime();
-        LocalDateTime parentEndTime = parent.getEndTime();
-        Duration parentDuration = parent.getDuration();
-        Duration subtaskDuration = subtask.getDuration();
-        if (parentStartTime == null || parentStartTime.isAfter(subtaskStartTime)) {
-            parent.setStartTime(subtaskStartTime);
-        }
-        if (parentEndTime == null || parentEndTime.isBefore(subtaskEndTime)) {
-            parent.setEndTime(subtaskEndTime);
-        }
-        if (parentDuration == null) {
-            parent.setDuration(subtaskDuration);
-        } else {
-            parent.setDuration(parentDuration.plus(subtaskDuration));
-        }
-    }
-
     @Override
     public boolean updateTask(Task task) {
         Task stored = tasks.get(task.getId());
         if (stored == null) {
             return false;
         }
-        LocalDateTime storedStartTime = task.getStartTime();
-        Duration storedDuration = task.getDuration();
-        if (!storedStartTime.equals(task.getStartTime()) || !storedDuration.equals(task.getDuration())) {
+        if (!Objects.equals(stored.getStartTime(), task.getStartTime())
+                || !Objects.equals(stored.getDuration(), task.getDuration())) {
             if (!scheduler.updateInterval(stored, task)) {
                 return false;
             }
         }
         Task newTask = task.clone();
+        newTask.freeze();
         tasks.put(task.getId(), newTask);
+        reindex(stored, newTask);
         return true;
     }
 
@@ -208,15 +359,23 @@ public class InMemoryTaskManager implements TaskManager {
         if (stored == null) {
             return false;
         }
-        Epic newEpic = (Epic) epic.clone();
-        newEpic.setStatus(stored.getStatus());
-        newEpic.setStartTime(stored.getStartTime());
-        newEpic.setDuration(stored.getDuration());
-        newEpic.setEndTime(stored.getEndTime());
+        Epic newEpic = updatedEpic(stored, epic);
         epics.put(newEpic.getId(), newEpic);
+        searchIndex.update(stored, newEpic);
         return true;
     }
 
+    /**
+     * Only the title and description of an epic are updated, the epic keeps its stored subtasks
+     * and the status and time rolled up from them.
+     */
+    private static Epic updatedEpic(Epic stored, Epic epic) {
+        Epic newEpic = (Epic) stored.clone();
+        newEpic.setTitle(epic.getTitle());
+        newEpic.setDescription(epic.getDescription());
+        return newEpic;
+    }
+
     @Override
     public boolean updateSubtask(Subtask subtask) {
         Subtask subStored = subtasks.get(subtask.getId());
@@ -238,11 +397,13 @@ public class InMemoryTaskManager implements TaskManager {
                 return false;
             }
         }
-        epicSubTasks.remove(subStored);
         Subtask newSubtask = (Subtask) subtask.clone();
-        epicSubTasks.add(newSubtask);
-        parent.resolveEpicData();
+        newSubtask.freeze();
+        Status parentStatus = parent.getStatus();
+        parent.replaceSubtask(subStored, newSubtask);
+        restatus(parent.getId(), parentStatus, parent.getStatus());
         subtasks.put(subtask.getId(), newSubtask);
+        reindex(subStored, newSubtask);
         return true;
     }
 
@@ -256,10 +417,10 @@ public class InMemoryTaskManager implements TaskManager {
         if (!scheduler.removeInterval(stored)) {
             return null;
         }
-        historyManager.remove(tasks.get(id));
-        Task task = stored.clone();
+        historyManager.remove(stored);
         tasks.remove(id);
-        return task;
+        reindex(stored, null);
+        return stored;
     }
 
     @Override
@@ -268,7 +429,7 @@ public class InMemoryTaskManager implements TaskManager {
         if (stored == null) {
             return null;
         }
-        Epic deletedEpic = (Epic) stored.clone();
+        Epic deletedEpic = stored.snapshot();
         List<Subtask> epicSubs = stored.getSubtasks();
         if (!epicSubs.isEmpty()) {
             Map<Boolean, List<Subtask>> subsForRemoval = epicSubs.stream()
@@ -286,11 +447,14 @@ public class InMemoryTaskManager implements TaskManager {
             } else {
                 subtasks.values().removeAll(subsForRemoval.get(Boolean.TRUE));
                 subsForRemoval.get(Boolean.TRUE).forEach(historyManager::remove);
+                subsForRemoval.get(Boolean.TRUE).forEach(sub -> reindex(sub, null));
                 epicSubs.removeAll(subsForRemoval.get(Boolean.TRUE));
             }
         }
         historyManager.remove(epics.get(id));
         epics.remove(id);
+        restatus(id, stored.getStatus(), null);
+        searchIndex.update(stored, null);
         return deletedEpic;
     }
 
@@ -311,18 +475,19 @@ public class InMemoryTaskManager implements TaskManager {
         if (!scheduler.removeInterval(stored)) {
             return null;
         }
-        historyManager.remove(subtasks.get(id));
-        epicSubTasks.remove(stored);
-        parent.resolveEpicData();
-        Subtask subtask = (Subtask) subtasks.get(id).clone();
+        historyManager.remove(stored);
+        Status parentStatus = parent.getStatus();
+        parent.removeSubtask(stored);
+        restatus(parent.getId(), parentStatus, parent.getStatus());
         subtasks.remove(id);
-        return subtask;
+        reindex(stored, null);
+        return stored;
     }
 
     @Override
     public List<Subtask> getSubtasksOfEpic(Epic epic) {
         Epic stored = epics.get(epic.getId());
-        return stored.getSubtasks().parallelStream().map(x -> (Subtask) x.clone()).collect(Collectors.toList());
+        return new ArrayList<>(stored.getSubtasks());
     }
 
     /**
@@ -338,6 +503,7 @@ public class InMemoryTaskManager implements TaskManager {
                 .map(Task::getId)
                 .collect(Collectors.toSet());
         boolean allTasksCleaned = tasks.size() == keysForRemoval.size();
+        keysForRemoval.forEach(id -> reindex(tasks.get(id), null));
         tasks.keySet().removeAll(keysForRemoval);
         return allTasksCleaned;
     }
@@ -351,6 +517,10 @@ public class InMemoryTaskManager implements TaskManager {
     public boolean deleteAllEpics() {
         if (deleteAllSubTasks()) {
             epics.values().forEach(historyManager::remove);
+            epics.values().forEach(epic -> {
+                restatus(epic.getId(), epic.getStatus(), null);
+                searchIndex.update(epic, null);
+            });
             epics.clear();
             return true;
         }
@@ -358,6 +528,10 @@ public class InMemoryTaskManager implements TaskManager {
                 .filter(x -> x.getSubtasks().isEmpty())
                 .map(Task::getId)
                 .collect(Collectors.toSet());
+        keysForRemoval.forEach(id -> {
+            restatus(id, epics.get(id).getStatus(), null);
+            searchIndex.update(epics.get(id), null);
+        });
         epics.keySet().removeAll(keysForRemoval);
         return false;
     }
@@ -379,13 +553,214 @@ public class InMemoryTaskManager implements TaskManager {
                     Set<Subtask> subsToRemove = keysForRemoval.get(y);
                     List<Subtask> epicSubs = y.getSubtasks();
                     epicSubs.removeAll(subsToRemove);
+                    Status epicStatus = y.getStatus();
                     y.resolveEpicData();
+                    restatus(y.getId(), epicStatus, y.getStatus());
                     subtasks.values().removeAll(subsToRemove);
+                    subsToRemove.forEach(sub -> reindex(sub, null));
                     return x && epicSubs.isEmpty();
                 }, (x, y) -> x && y);
         return allEpicsCleaned && subtasks.isEmpty();
     }
 
+    /**
+     * Intervals of the whole batch are checked in one scheduler pass and the status of every affected epic
+     * is indexed once. Ids are unique across tasks, epics and subtasks.
+     *
+     * @return false if an id is taken or repeated, the epic of a subtask is missing or intervals overlap
+     */
+    @Override
+    public boolean createAll(Collection<? extends Task> items) {
+        for (Task item : items) {
+            if (item.getId() == null) {
+                try {
+                    item.setId(idGenerator.generateId());
+                } catch (IdGenerator.IdGeneratorOverflow e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        }
+        Set<String> newEpics = items.stream()
+                .filter(Epic.class::isInstance)
+                .map(Task::getId)
+                .collect(Collectors.toSet());
+        Set<String> ids = new HashSet<>();
+        List<Task> timed = new ArrayList<>();
+        for (Task item : items) {
+            String id = item.getId();
+            if (!ids.add(id) || tasks.containsKey(id) || epics.containsKey(id) || subtasks.containsKey(id)) {
+                return false;
+            }
+            if (item instanceof Subtask subtask
+                    && !epics.containsKey(subtask.getEpicId()) && !newEpics.contains(subtask.getEpicId())) {
+                return false;
+            }
+            if (!(item instanceof Epic)) {
+                timed.add(item);
+            }
+        }
+        if (!scheduler.replaceIntervals(List.of(), timed)) {
+            return false;
+        }
+        for (Task item : items) {
+            if (item instanceof Epic epic) {
+                Epic newEpic = (Epic) epic.clone();
+                newEpic.setStatus(Status.NEW);
+                epics.put(newEpic.getId(), newEpic);
+                restatus(newEpic.getId(), null, Status.NEW);
+                searchIndex.update(null, newEpic);
+            }
+        }
+        Map<String, Status> rolledUp = new HashMap<>();
+        for (Task item : timed) {
+            Task newTask = item.clone();
+            newTask.freeze();
+            if (newTask instanceof Subtask newSubtask) {
+                Epic parent = epics.get(newSubtask.getEpicId());
+                rolledUp.putIfAbsent(parent.getId(), parent.getStatus());
+                parent.addSubtask(newSubtask);
+                subtasks.put(newSubtask.getId(), newSubtask);
+            } else {
+                tasks.put(newTask.getId(), newTask);
+            }
+            reindex(null, newTask);
+        }
+        rolledUp.forEach((id, status) -> restatus(id, status, epics.get(id).getStatus()));
+        return true;
+    }
+
+    /**
+     * Changed intervals of the whole batch are checked in one scheduler pass and the status of every affected
+     * epic is indexed once. Epics are updated as by {@link #updateEpic(Epic)}, subtasks can't move to another epic.
+     *
+     * @return false if an id is missing or repeated, a subtask's epic changed or intervals overlap
+     */
+    @Override
+    public boolean updateAll(Collection<? extends Task> items) {
+        Set<String> ids = new HashSet<>();
+        List<Task> freed = new ArrayList<>();
+        List<Task> taken = new ArrayList<>();
+        for (Task item : items) {
+            if (item.getId() == null || !ids.add(item.getId())) {
+                return false;
+            }
+            Task stored = switch (item) {
+                case Epic epic -> epics.get(epic.getId());
+                case Subtask subtask -> subtasks.get(subtask.getId());
+                default -> tasks.get(item.getId());
+            };
+            if (stored == null) {
+                return false;
+            }
+            if (item instanceof Subtask subtask) {
+                Epic parent = epics.get(subtask.getEpicId());
+                if (parent == null || !parent.getSubtasks().contains(stored)) {
+                    return false;
+                }
+            }
+            if (!(item instanceof Epic) && (!Objects.equals(stored.getStartTime(), item.getStartTime())
+                    || !Objects.equals(stored.getDuration(), item.getDuration()))) {
+                freed.add(stored);
+                taken.add(item);
+            }
+        }
+        if (!scheduler.replaceIntervals(freed, taken)) {
+            return false;
+        }
+        Map<String, Status> rolledUp = new HashMap<>();
+        for (Task item : items) {
+            switch (item) {
+                case Epic epic -> {
+                    Epic stored = epics.get(epic.getId());
+                    Epic newEpic = updatedEpic(stored, epic);
+                    epics.put(newEpic.getId(), newEpic);
+                    searchIndex.update(stored, newEpic);
+                }
+                case Subtask subtask -> {
+                    Subtask stored = subtasks.get(subtask.getId());
+                    Epic parent = epics.get(subtask.getEpicId());
+                    Subtask newSubtask = (Subtask) subtask.clone();
+                    newSubtask.freeze();
+                    rolledUp.putIfAbsent(parent.getId(), parent.getStatus());
+                    parent.replaceSubtask(stored, newSubtask);
+                    subtasks.put(newSubtask.getId(), newSubtask);
+                    reindex(stored, newSubtask);
+                }
+                default -> {
+                    Task newTask = item.clone();
+                    newTask.freeze();
+                    reindex(tasks.put(newTask.getId(), newTask), newTask);
+                }
+            }
+        }
+        rolledUp.forEach((id, status) -> restatus(id, status, epics.get(id).getStatus()));
+        return true;
+    }
+
+    /**
+     * Intervals of the whole batch are freed in one scheduler pass and the status of every affected epic
+     * is indexed once.
+     *
+     * @return deleted tasks, epics and subtasks, null if an id is missing or an interval could not be freed
+     */
+    @Override
+    public List<Task> deleteAll(Collection<String> ids) {
+        Map<String, Task> doomed = new LinkedHashMap<>();
+        for (String id : ids) {
+            Task stored = tasks.get(id);
+            if (stored == null) {
+                stored = epics.get(id);
+            }
+            if (stored == null) {
+                stored = subtasks.get(id);
+            }
+            if (stored == null) {
+                return null;
+            }
+            doomed.put(id, stored);
+            if (stored instanceof Epic epic) {
+                epic.getSubtasks().forEach(subtask -> doomed.put(subtask.getId(), subtask));
+            }
+        }
+        List<Task> timed = doomed.values().stream()
+                .filter(task -> !(task instanceof Epic))
+                .toList();
+        if (!scheduler.replaceIntervals(timed, List.of())) {
+            return null;
+        }
+        Map<String, Status> rolledUp = new HashMap<>();
+        List<Task> deleted = new ArrayList<>(doomed.size());
+        for (Task stored : doomed.values()) {
+            historyManager.remove(stored);
+            switch (stored) {
+                case Epic epic -> {
+                    Status indexed = rolledUp.remove(epic.getId());
+                    restatus(epic.getId(), indexed == null ? epic.getStatus() : indexed, null);
+                    epics.remove(epic.getId());
+                    searchIndex.update(epic, null);
+                    deleted.add(epic.snapshot());
+                }
+                case Subtask subtask -> {
+                    Epic parent = epics.get(subtask.getEpicId());
+                    if (parent != null) {
+                        rolledUp.putIfAbsent(parent.getId(), parent.getStatus());
+                        parent.removeSubtask(subtask);
+                    }
+                    subtasks.remove(subtask.getId());
+                    reindex(subtask, null);
+                    deleted.add(subtask);
+                }
+                default -> {
+                    tasks.remove(stored.getId());
+                    reindex(stored, null);
+                    deleted.add(stored);
+                }
+            }
+        }
+        rolledUp.forEach((id, status) -> restatus(id, status, epics.get(id).getStatus()));
+        return deleted;
+    }
+
     @Override
     public List<Task> getHistory() {
         return historyManager.getHistory();
@@ -0,0 +1,69 @@
+package org.my.manager;
+
+import org.my.manager.storage.HistoryJournal;
+import org.my.task.Task;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Records every change of the wrapped history in a {@link HistoryJournal} once the journal is attached.
+ * Restoring the history is not journaled.
+ */
+class JournaledHistoryManager implements HistoryManager {
+    private final HistoryManager historyManager;
+    private HistoryJournal journal;
+
+    JournaledHistoryManager(HistoryManager historyManager) {
+        this.historyManager = historyManager;
+    }
+
+    void attach(HistoryJournal journal) {
+        this.journal = journal;
+    }
+
+    @Override
+    public void addTask(Task task) {
+        historyManager.addTask(task);
+        if (task != null && journal != null) {
+            try {
+                journal.touched(task.getId());
+                compactIfNeeded();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    @Override
+    public List<Task> getHistory() {
+        return historyManager.getHistory();
+    }
+
+    @Override
+    public void remove(Task task) {
+        historyManager.remove(task);
+        if (task != null && journal != null) {
+            try {
+                journal.removed(task.getId());
+                compactIfNeeded();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    @Override
+    public void restore(List<Task> history) {
+        historyManager.restore(history);
+    }
+
+    /**
+     * Rewrites the journal with the current history if it grew too long.
+     */
+    void compactIfNeeded() throws IOException {
+        if (journal.needsCompaction()) {
+            journal.compact(historyManager.getHistory().stream().map(Task::getId).toList());
+        }
+    }
+}
@@ -14,6 +14,10 @@ public class Managers {
         return new InMemoryTaskManager();
     }
 
+    public static ConcurrentTaskManager getConcurrentTaskManager() {
+        return new ConcurrentTaskManager();
+    }
+
     public static FileBackedTaskManager getFileBackedTaskManager() {
         try {
             return FileBackedTaskManager.getInstance();
@@ -0,0 +1,108 @@
+package org.my.manager;
+
+import org.my.task.Task;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Inverted index of the words of task titles and descriptions. Words are runs of letters and digits, lowercased,
+ * every word maps to the ids of the tasks containing it, so a query reads only the ids listed for its words.
+ * <p>
+ * A query is words which must all occur in a task, alternatives of such words are separated by {@code OR},
+ * e.g. {@code "deploy fix OR rollback"}.
+ */
+final class SearchIndex {
+    private static final Pattern WORD_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final Pattern ALTERNATIVE_SEPARATOR = Pattern.compile("\\s+OR\\s+");
+
+    private final Map<String, Set<String>> postings = new ConcurrentHashMap<>();
+
+    /**
+     * Replaces the words of the old version of the task with the words of the new one, either may be null.
+     */
+    void update(Task old, Task task) {
+        Set<String> oldWords = old == null ? Set.of() : words(old);
+        Set<String> newWords = task == null ? Set.of() : words(task);
+        String id = task == null ? old.getId() : task.getId();
+        for (String word : oldWords) {
+            if (!newWords.contains(word)) {
+                postings.computeIfPresent(word, (key, ids) -> {
+                    ids.remove(id);
+                    return ids.isEmpty() ? null : ids;
+                });
+            }
+        }
+        for (String word : newWords) {
+            if (!oldWords.contains(word)) {
+                postings.compute(word, (key, ids) -> {
+                    Set<String> posting = ids == null ? ConcurrentHashMap.newKeySet() : ids;
+                    posting.add(id);
+                    return posting;
+                });
+            }
+        }
+    }
+
+    void clear() {
+        postings.clear();
+    }
+
+    /**
+     * Words of an alternative are matched by walking the shortest of their id sets,
+     * so a query costs the size of its rarest words rather than the size of the board.
+     *
+     * @return ids of at most limit tasks matching the query
+     */
+    List<String> search(String query, int limit) {
+        if (limit <= 0) {
+            return List.of();
+        }
+        Set<String> found = new LinkedHashSet<>();
+        for (String alternative : ALTERNATIVE_SEPARATOR.split(query.strip())) {
+            List<Set<String>> matches = new ArrayList<>();
+            for (String word : words(alternative)) {
+                Set<String> ids = postings.get(word);
+                if (ids == null) {
+                    matches.clear();
+                    break;
+                }
+                matches.add(ids);
+            }
+            if (matches.isEmpty()) {
+                continue;
+            }
+            matches.sort(Comparator.comparingInt(Set::size));
+            List<Set<String>> others = matches.subList(1, matches.size());
+            for (String id : matches.getFirst()) {
+                if (others.stream().allMatch(ids -> ids.contains(id))) {
+                    found.add(id);
+                    if (found.size() == limit) {
+                        return List.copyOf(found);
+                    }
+                }
+            }
+        }
+        return List.copyOf(found);
+    }
+
+    private static Set<String> words(Task task) {
+        Set<String> words = words(task.getTitle());
+        words.addAll(words(task.getDescription()));
+        return words;
+    }
+
+    private static Set<String> words(String text) {
+        Set<String> words = new HashSet<>();
+        if (text == null) {
+            return words;
+        }
+        for (String word : WORD_SEPARATOR.split(text.toLowerCase(Locale.ROOT))) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+}
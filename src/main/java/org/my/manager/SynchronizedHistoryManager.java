@@ -0,0 +1,36 @@
+package org.my.manager;
+
+import org.my.task.Task;
+
+import java.util.List;
+
+/**
+ * Serializes access to the wrapped history, which may be used by many threads at once.
+ */
+class SynchronizedHistoryManager implements HistoryManager {
+    private final HistoryManager historyManager;
+
+    SynchronizedHistoryManager(HistoryManager historyManager) {
+        this.historyManager = historyManager;
+    }
+
+    @Override
+    public synchronized void addTask(Task task) {
+        historyManager.addTask(task);
+    }
+
+    @Override
+    public synchronized List<Task> getHistory() {
+        return historyManager.getHistory();
+    }
+
+    @Override
+    public synchronized void remove(Task task) {
+        historyManager.remove(task);
+    }
+
+    @Override
+    public synchronized void restore(List<Task> history) {
+        historyManager.restore(history);
+    }
+}
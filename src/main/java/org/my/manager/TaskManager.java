@@ -1,10 +1,14 @@
 package org.my.manager;
 
 import org.my.task.Epic;
+import org.my.task.Status;
 import org.my.task.Subtask;
 import org.my.task.Task;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 public interface TaskManager {
@@ -49,4 +53,55 @@ public interface TaskManager {
     List<Task> getHistory();
 
     List<Task> getPrioritizedTasks();
+
+    /**
+     * Scheduled tasks never overlap, so the next page starts at the end time of the last task of a page.
+     *
+     * @return at most limit tasks and subtasks in priority order, starting at or after the given time
+     */
+    List<Task> getPrioritizedTasks(LocalDateTime from, int limit);
+
+    /**
+     * @return tasks and subtasks in priority order starting at or after from and before to
+     */
+    List<Task> getPrioritizedTasks(LocalDateTime from, LocalDateTime to);
+
+    /**
+     * @return tasks, epics and subtasks with the given status, in no particular order
+     */
+    List<Task> getTasksByStatus(Status status);
+
+    /**
+     * Creates all given tasks, epics and subtasks or none of them, subtasks may belong to epics of the batch.
+     *
+     * @return false if nothing is created
+     */
+    boolean createAll(Collection<? extends Task> items);
+
+    /**
+     * Updates all given tasks, epics and subtasks or none of them.
+     *
+     * @return false if nothing is updated
+     */
+    boolean updateAll(Collection<? extends Task> items);
+
+    /**
+     * Deletes the tasks, epics and subtasks of all given ids or none of them, subtasks of deleted epics included.
+     *
+     * @return deleted tasks, null if nothing is deleted
+     */
+    List<Task> deleteAll(Collection<String> ids);
+
+    /**
+     * @return number of tasks, epics and subtasks of every status
+     */
+    Map<Status, Integer> countByStatus();
+
+    /**
+     * Words of the query must all occur in the title or description of a task, {@code OR} separates alternatives.
+     * Words are letters and digits and are matched ignoring case.
+     *
+     * @return at most limit matching tasks, epics and subtasks
+     */
+    List<Task> search(String query, int limit);
 }
@@ -14,12 +14,27 @@ public class SchedulePerYear implements Cloneable, Serializable {
     private final int year;
 
     SchedulePerYear(int year, int windowInMinutes) {
+        this(year, windowInMinutes, null);
+    }
+
+    /**
+     * @param schedule - bitmap of a stored schedule or null for an empty one
+     */
+    SchedulePerYear(int year, int windowInMinutes, BitSet schedule) {
         this.windowInMinutes = windowInMinutes;
         this.partOfHour = 60 / windowInMinutes;
         this.year = year;
         int numDays = Year.isLeap(year) ? 366 : 365;
         this.scheduleSize = numDays * 24 * partOfHour;
-        this.schedule = new BitSet(scheduleSize);
+        this.schedule = schedule == null ? new BitSet(scheduleSize) : schedule;
+    }
+
+    /**
+     * @return number of bitmap words of a year with the given window, leap years included
+     */
+    static int wordsPerYear(int windowInMinutes) {
+        int bits = 366 * 24 * (60 / windowInMinutes);
+        return (bits + Long.SIZE - 1) / Long.SIZE;
     }
 
     /**
@@ -89,6 +104,10 @@ public class SchedulePerYear implements Cloneable, Serializable {
         this.schedule.set(startOfInterval, endOfInterval, false);
     }
 
+    synchronized long[] words() {
+        return schedule.toLongArray();
+    }
+
     int getScheduleSize() {
         return scheduleSize;
     }
@@ -0,0 +1,165 @@
+package org.my.manager.scheduler;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Snapshot file of a {@link Scheduler}. After a header the file holds a fixed size block per year:
+ * the year followed by the raw words of the year's bitmap. A block is overwritten in place,
+ * so only the {@link Scheduler#takeDirtyYears() years changed} since the last write are written.
+ * <p>
+ * Files written by Java serialization of the scheduler are read and converted on {@link #load() load}.
+ */
+public class ScheduleStore implements AutoCloseable {
+    private static final int MAGIC = 0x4B534348;
+    private static final short VERSION = 1;
+    private static final int HEADER_LENGTH = 16;
+    private static final int YEAR_LENGTH = Long.BYTES;
+    private static final short SERIALIZATION_MAGIC = (short) 0xACED;
+
+    private final FileChannel channel;
+    private final int wordsPerYear = SchedulePerYear.wordsPerYear(Scheduler.WINDOW_IN_MINUTES);
+    private final int blockLength = YEAR_LENGTH + wordsPerYear * Long.BYTES;
+    private final Map<Integer, Long> blocks = new HashMap<>();
+
+    public ScheduleStore(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Reads every year of the snapshot, an empty file gives an empty scheduler.
+     */
+    public synchronized Scheduler load() throws IOException, ClassNotFoundException {
+        blocks.clear();
+        Scheduler scheduler = new Scheduler();
+        if (channel.size() == 0) {
+            writeHeader();
+            return scheduler;
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+        readFully(header, 0);
+        header.flip();
+        if (header.getShort(0) == SERIALIZATION_MAGIC) {
+            return convert();
+        }
+        if (header.getInt() != MAGIC) {
+            throw new IOException("not a schedule file");
+        }
+        short version = header.getShort();
+        short windowInMinutes = header.getShort();
+        int storedWordsPerYear = header.getInt();
+        if (version != VERSION || windowInMinutes != Scheduler.WINDOW_IN_MINUTES || storedWordsPerYear != wordsPerYear) {
+            throw new IOException("unsupported schedule file version " + version);
+        }
+        ByteBuffer block = ByteBuffer.allocate(blockLength);
+        long[] words = new long[wordsPerYear];
+        for (long position = HEADER_LENGTH; position + blockLength <= channel.size(); position += blockLength) {
+            block.clear();
+            readFully(block, position);
+            block.flip();
+            int year = block.getInt();
+            block.position(YEAR_LENGTH);
+            LongBuffer longs = block.asLongBuffer();
+            longs.get(words);
+            scheduler.restoreYear(year, words);
+            blocks.put(year, position);
+        }
+        return scheduler;
+    }
+
+    /**
+     * Writes the given years into their blocks, appending blocks for new years, and forces the file.
+     */
+    public synchronized void write(Map<Integer, long[]> years) throws IOException {
+        if (years.isEmpty()) {
+            return;
+        }
+        ByteBuffer block = ByteBuffer.allocate(blockLength);
+        for (Map.Entry<Integer, long[]> year : years.entrySet()) {
+            Long position = blocks.get(year.getKey());
+            if (position == null) {
+                position = Math.max(channel.size(), HEADER_LENGTH);
+                blocks.put(year.getKey(), position);
+            }
+            Arrays.fill(block.array(), (byte) 0);
+            block.clear();
+            block.putInt(year.getKey()).putInt(0);
+            block.asLongBuffer().put(year.getValue());
+            block.clear();
+            writeFully(block, position);
+        }
+        channel.force(false);
+    }
+
+    /**
+     * Writes a complete snapshot of the given years to the file, replacing its contents.
+     */
+    public static void writeSnapshot(Path file, Map<Integer, long[]> years) throws IOException {
+        try (ScheduleStore store = new ScheduleStore(file)) {
+            store.channel.truncate(0);
+            store.writeHeader();
+            store.write(years);
+            store.channel.force(false);
+        }
+    }
+
+    /**
+     * Reads a scheduler written by Java serialization and rewrites the file in the current format.
+     */
+    private Scheduler convert() throws IOException, ClassNotFoundException {
+        Scheduler scheduler;
+        try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(
+                Channels.newInputStream(channel.position(0))) {
+            @Override
+            public void close() {
+                // the channel stays open
+            }
+        })) {
+            scheduler = (Scheduler) in.readObject();
+        }
+        channel.truncate(0);
+        writeHeader();
+        scheduler.markAllDirty();
+        write(scheduler.takeDirtyYears());
+        return scheduler;
+    }
+
+    private void writeHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH)
+                .putInt(MAGIC)
+                .putShort(VERSION)
+                .putShort((short) Scheduler.WINDOW_IN_MINUTES)
+                .putInt(wordsPerYear)
+                .putInt(0)
+                .flip();
+        writeFully(header, 0);
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("schedule file truncated");
+            }
+        }
+    }
+
+    private void writeFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+}
@@ -4,14 +4,49 @@ import org.my.task.Task;
 
 import java.io.Serializable;
 import java.time.LocalDateTime;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 public class Scheduler implements Serializable {
     // amount of minutes in a window within an hour
-    private static final int WINDOW_IN_MINUTES = 15;
+    static final int WINDOW_IN_MINUTES = 15;
 
     private final Map<Integer, SchedulePerYear> intervalYears = new HashMap<>();
+    // years changed since the last snapshot, see ScheduleStore
+    private transient Set<Integer> dirtyYears = new HashSet<>();
+
+    /**
+     * Builds the occupancy of the given tasks instead of loading a snapshot. Tasks are grouped by the years
+     * they cover and each year is filled independently, in parallel.
+     */
+    public static Scheduler rebuild(Collection<? extends Task> tasks) {
+        Map<Integer, List<Task>> tasksByYear = tasks.parallelStream()
+                .filter(task -> task.getStartTime() != null && task.getEndTime() != null)
+                .flatMap(task -> IntStream.rangeClosed(task.getStartTime().getYear(), task.getEndTime().getYear())
+                        .mapToObj(year -> Map.entry(year, (Task) task)))
+                .collect(Collectors.groupingByConcurrent(Map.Entry::getKey,
+                        Collectors.mapping(Map.Entry::getValue, Collectors.toList())));
+        Scheduler scheduler = new Scheduler();
+        scheduler.intervalYears.putAll(tasksByYear.entrySet().parallelStream()
+                .collect(Collectors.toMap(Map.Entry::getKey, entry -> fill(entry.getKey(), entry.getValue()))));
+        return scheduler;
+    }
+
+    private static SchedulePerYear fill(int year, List<Task> tasks) {
+        SchedulePerYear schedulePerYear = new SchedulePerYear(year, WINDOW_IN_MINUTES);
+        for (Task task : tasks) {
+            LocalDateTime startTime = task.getStartTime();
+            LocalDateTime endTime = task.getEndTime();
+            if (startTime.getYear() < year && endTime.getYear() > year) {
+                schedulePerYear.setSchedule(0, schedulePerYear.getScheduleSize());
+            } else {
+                int[] interval = schedulePerYear.getInterval(startTime, endTime);
+                schedulePerYear.setSchedule(interval[0], interval[1]);
+            }
+        }
+        return schedulePerYear;
+    }
 
     void createSchedule(int year) {
         intervalYears.put(year, new SchedulePerYear(year, WINDOW_IN_MINUTES));
@@ -48,7 +83,7 @@ public class Scheduler implements Serializable {
             }
             newSchedulePerYear.setSchedule(start, end);
         }
-        intervalYears.putAll(schedules);
+        commit(schedules);
         return true;
     }
 
@@ -101,7 +136,7 @@ public class Scheduler implements Serializable {
                 SchedulePerYear newSchedulePerYear;
                 if (!schedules.containsKey(curYear)) {
                     newSchedulePerYear = intervalYears.get(curYear).clone();
-                    schedules.put(i, newSchedulePerYear);
+                    schedules.put(curYear, newSchedulePerYear);
                 } else {
                     newSchedulePerYear = schedules.get(curYear);
                 }
@@ -121,7 +156,7 @@ public class Scheduler implements Serializable {
                 newSchedulePerYear.setSchedule(start, end);
             }
         }
-        intervalYears.putAll(schedules);
+        commit(schedules);
         return true;
     }
 
@@ -141,7 +176,7 @@ public class Scheduler implements Serializable {
                 createSchedule(curYear);
             }
             SchedulePerYear newSchedulePerYear = intervalYears.get(curYear).clone();
-            schedules.put(i, newSchedulePerYear);
+            schedules.put(curYear, newSchedulePerYear);
             int start;
             int end;
             if (i == 0 || i == diff) {
@@ -157,7 +192,125 @@ public class Scheduler implements Serializable {
             }
             newSchedulePerYear.removeSchedule(start, end);
         }
-        intervalYears.putAll(schedules);
+        commit(schedules);
+        return true;
+    }
+
+    /**
+     * Frees the intervals of the removed tasks and takes the intervals of the added ones in one pass,
+     * every year touched is copied once. Nothing is changed unless every removed interval is taken
+     * and every added interval is free, added tasks may not overlap each other either.
+     */
+    public synchronized boolean replaceIntervals(Collection<? extends Task> removed, Collection<? extends Task> added) {
+        Map<Integer, SchedulePerYear> schedules = new HashMap<>();
+        for (Task task : removed) {
+            if (!mark(schedules, task, false)) {
+                return false;
+            }
+        }
+        for (Task task : added) {
+            if (!mark(schedules, task, true)) {
+                return false;
+            }
+        }
+        commit(schedules);
         return true;
     }
+
+    private boolean mark(Map<Integer, SchedulePerYear> schedules, Task task, boolean taken) {
+        LocalDateTime startTime = task.getStartTime();
+        LocalDateTime endTime = task.getEndTime();
+        if (startTime == null || endTime == null) {
+            return true;
+        }
+        int taskStartYear = startTime.getYear();
+        int diff = endTime.getYear() - taskStartYear;
+        for (int i = 0; i <= diff; i++) {
+            int curYear = taskStartYear + i;
+            SchedulePerYear newSchedulePerYear = schedules.get(curYear);
+            if (newSchedulePerYear == null) {
+                if (!intervalYears.containsKey(curYear)) {
+                    createSchedule(curYear);
+                }
+                newSchedulePerYear = intervalYears.get(curYear).clone();
+                schedules.put(curYear, newSchedulePerYear);
+            }
+            int start;
+            int end;
+            if (i == 0 || i == diff) {
+                int[] interval = newSchedulePerYear.getInterval(startTime, endTime);
+                start = interval[0];
+                end = interval[1];
+            } else {
+                start = 0;
+                end = newSchedulePerYear.getScheduleSize();
+            }
+            if (taken) {
+                if (!newSchedulePerYear.allowedToInsert(start, end)) {
+                    return false;
+                }
+                newSchedulePerYear.setSchedule(start, end);
+            } else {
+                if (!newSchedulePerYear.isSet(start, end)) {
+                    return false;
+                }
+                newSchedulePerYear.removeSchedule(start, end);
+            }
+        }
+        return true;
+    }
+
+    private void commit(Map<Integer, SchedulePerYear> schedules) {
+        intervalYears.putAll(schedules);
+        dirtyYears().addAll(schedules.keySet());
+    }
+
+    private Set<Integer> dirtyYears() {
+        if (dirtyYears == null) {
+            dirtyYears = new HashSet<>();
+        }
+        return dirtyYears;
+    }
+
+    /**
+     * Returns copies of the bitmap words of the years changed since the previous call and forgets the changes.
+     */
+    public synchronized Map<Integer, long[]> takeDirtyYears() {
+        Map<Integer, long[]> years = new HashMap<>();
+        for (int year : dirtyYears()) {
+            years.put(year, intervalYears.get(year).words());
+        }
+        dirtyYears().clear();
+        return years;
+    }
+
+    /**
+     * Returns copies of the bitmap words of every year.
+     */
+    public synchronized Map<Integer, long[]> copyYears() {
+        Map<Integer, long[]> years = new HashMap<>();
+        for (Map.Entry<Integer, SchedulePerYear> year : intervalYears.entrySet()) {
+            years.put(year.getKey(), year.getValue().words());
+        }
+        return years;
+    }
+
+    /**
+     * Marks years as changed again, e.g. after their {@link #takeDirtyYears() taken} words failed to be written.
+     */
+    public synchronized void markDirty(Collection<Integer> years) {
+        for (int year : years) {
+            if (intervalYears.containsKey(year)) {
+                dirtyYears().add(year);
+            }
+        }
+    }
+
+    synchronized void markAllDirty() {
+        dirtyYears().addAll(intervalYears.keySet());
+    }
+
+    synchronized void restoreYear(int year, long[] words) {
+        intervalYears.put(year, new SchedulePerYear(year, WINDOW_IN_MINUTES, BitSet.valueOf(words)));
+    }
 }
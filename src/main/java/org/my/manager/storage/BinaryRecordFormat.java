@@ -0,0 +1,210 @@
+package org.my.manager.storage;
+
+import org.my.task.Task;
+import org.my.util.BinaryTaskCodec;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+/**
+ * Length-prefixed records of {@link BinaryTaskCodec}. A record is a 4 byte payload length, the payload
+ * and the CRC32C of the payload, files start with {@link #MAGIC MAGIC}. Slots are padded with zeros
+ * after the payload, the padding is covered by the checksum.
+ * <p>
+ * Files starting with {@link #LEGACY_MAGIC LEGACY_MAGIC} were written before checksums, their records have
+ * no checksum. A record running past the end of a file was torn by a crash and is not read.
+ */
+public final class BinaryRecordFormat implements RecordFormat {
+    public static final String NAME = "binary";
+    static final BinaryRecordFormat INSTANCE = new BinaryRecordFormat(true);
+    static final BinaryRecordFormat LEGACY = new BinaryRecordFormat(false);
+    static final byte[] MAGIC = new byte[]{'K', 'B', 'N', 2};
+    static final byte[] LEGACY_MAGIC = new byte[]{'K', 'B', 'N', 1};
+    private static final int PREFIX = Integer.BYTES;
+    private static final byte UPSERT_MARK = 'U';
+    private static final byte TOMBSTONE_MARK = 'D';
+
+    private final BinaryTaskCodec codec = new BinaryTaskCodec();
+    private final boolean checksummed;
+    private final int trailer;
+
+    private BinaryRecordFormat(boolean checksummed) {
+        this.checksummed = checksummed;
+        this.trailer = checksummed ? Integer.BYTES : 0;
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public byte[] header() {
+        return checksummed ? MAGIC.clone() : LEGACY_MAGIC.clone();
+    }
+
+    @Override
+    public byte[] logHeader() {
+        return header();
+    }
+
+    @Override
+    public byte[] encode(Task task) {
+        return frame(codec.encode(task), 0);
+    }
+
+    @Override
+    public ByteBuffer toSlot(byte[] record, int slotLength) {
+        byte[] payload = Arrays.copyOfRange(record, PREFIX, record.length - trailer);
+        return ByteBuffer.wrap(frame(payload, slotLength - PREFIX - trailer));
+    }
+
+    @Override
+    public ByteBuffer blankSlot(int slotLength) {
+        return toSlot(frame(new byte[]{BinaryTaskCodec.BLANK}, 0), slotLength);
+    }
+
+    @Override
+    public byte[] encode(LogRecord record) {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream(128);
+        switch (record.operation()) {
+            case UPSERT -> {
+                payload.write(UPSERT_MARK);
+                payload.writeBytes(codec.encode(record.task()));
+            }
+            case TOMBSTONE -> {
+                payload.write(TOMBSTONE_MARK);
+                payload.writeBytes(record.id().getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        return frame(payload.toByteArray(), 0);
+    }
+
+    /**
+     * Records can only be found by walking their length prefixes, so the file is scanned once
+     * through a window of prefixes while the payloads are left to the chunk readers.
+     * A damaged prefix ends the walk, the rest of the file becomes the last chunk.
+     */
+    @Override
+    public long[] split(FileChannel channel, int parts) throws IOException {
+        long size = channel.size();
+        long start = Math.min(MAGIC.length, size);
+        long[] bounds = new long[parts + 1];
+        bounds[0] = start;
+        ByteBuffer window = ByteBuffer.allocate(65536).limit(0);
+        long windowStart = 0;
+        int next = 1;
+        long position = start;
+        while (position < size && next < parts) {
+            if (position + PREFIX > windowStart + window.limit()) {
+                window.clear();
+                windowStart = position;
+                while (window.hasRemaining() && channel.read(window, windowStart + window.position()) > 0) {
+                    // fill the window up to the end of the file
+                }
+                window.flip();
+                if (window.remaining() < PREFIX) {
+                    break;
+                }
+            }
+            int length = window.getInt((int) (position - windowStart));
+            if (length < 1) {
+                break;
+            }
+            position += PREFIX + length + trailer;
+            while (next < parts && position >= start + (size - start) * next / parts) {
+                bounds[next++] = Math.min(position, size);
+            }
+        }
+        while (next <= parts) {
+            bounds[next++] = size;
+        }
+        return bounds;
+    }
+
+    @Override
+    public long read(ByteBuffer chunk, long offset, RecordVisitor visitor) throws IOException {
+        int start = chunk.position();
+        while (chunk.remaining() >= PREFIX) {
+            int recordStart = chunk.position();
+            int length = chunk.getInt();
+            if (length < 1 || length > chunk.remaining() - trailer) {
+                chunk.position(recordStart);
+                break;
+            }
+            ByteBuffer payload = chunk.slice(chunk.position(), length);
+            chunk.position(chunk.position() + length);
+            long recordOffset = offset + recordStart - start;
+            if (checksummed && chunk.getInt() != checksum(payload)) {
+                visitor.corrupt(recordOffset, PREFIX + length + trailer);
+            } else {
+                visitor.visit(recordOffset, PREFIX + length + trailer, codec.decode(payload));
+            }
+        }
+        return offset + chunk.position() - start;
+    }
+
+    /**
+     * Replays the log up to the first record which is torn or fails its checksum, later records are not trusted.
+     */
+    @Override
+    public long readLog(InputStream in, Consumer<LogRecord> consumer) throws IOException {
+        byte[] magic = in.readNBytes(MAGIC.length);
+        if (magic.length == 0) {
+            return 0;
+        }
+        if (!Arrays.equals(magic, header())) {
+            throw new IOException("not a binary task file");
+        }
+        long offset = magic.length;
+        byte[] prefix = new byte[PREFIX];
+        while (in.readNBytes(prefix, 0, PREFIX) == PREFIX) {
+            int length = ByteBuffer.wrap(prefix).getInt();
+            if (length < 1) {
+                break;
+            }
+            byte[] record = in.readNBytes(length + trailer);
+            if (record.length < length + trailer) {
+                break;
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(record, 0, length);
+            if (checksummed && ByteBuffer.wrap(record).getInt(length) != checksum(buffer.slice())) {
+                break;
+            }
+            byte mark = buffer.get();
+            consumer.accept(switch (mark) {
+                case UPSERT_MARK -> LogRecord.upsert(codec.decode(buffer));
+                case TOMBSTONE_MARK -> LogRecord.tombstone(
+                        new String(record, 1, length - 1, StandardCharsets.UTF_8));
+                default -> throw new IllegalStateException("unknown log record: " + mark);
+            });
+            offset += PREFIX + length + trailer;
+        }
+        return offset;
+    }
+
+    /**
+     * @param minLength - the payload is padded with zeros up to this length
+     */
+    private byte[] frame(byte[] payload, int minLength) {
+        int length = Math.max(payload.length, minLength);
+        ByteBuffer frame = ByteBuffer.allocate(PREFIX + length + trailer).putInt(length).put(payload);
+        if (checksummed) {
+            frame.putInt(PREFIX + length, checksum(frame.slice(PREFIX, length)));
+        }
+        return frame.array();
+    }
+
+    private static int checksum(ByteBuffer payload) {
+        CRC32C crc = new CRC32C();
+        crc.update(payload.duplicate());
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,103 @@
+package org.my.manager.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Writes records to a file channel through a direct buffer, so many small records cost one write
+ * and records of any size are written in buffer-sized chunks.
+ * <p>
+ * Every thread keeps one buffer which is lent to one writer at a time, a writer opened while the thread's buffer
+ * is lent out gets a buffer of its own. Writers are not thread safe and must be {@link #close() closed}
+ * to write the rest of the buffer and give the buffer back.
+ */
+public final class ChannelWriter implements AutoCloseable {
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final ThreadLocal<ByteBuffer> BUFFERS = new ThreadLocal<>();
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private long position;
+    private long written;
+
+    private ChannelWriter(FileChannel channel, long position) {
+        this.channel = channel;
+        this.position = position;
+        ByteBuffer pooled = BUFFERS.get();
+        if (pooled == null) {
+            pooled = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        } else {
+            BUFFERS.remove();
+        }
+        this.buffer = pooled;
+    }
+
+    /**
+     * @return writer appending at the channel's position
+     */
+    public static ChannelWriter append(FileChannel channel) {
+        return new ChannelWriter(channel, -1);
+    }
+
+    /**
+     * @return writer writing from the given position of the file on, the channel's position is not changed
+     */
+    public static ChannelWriter at(FileChannel channel, long position) {
+        return new ChannelWriter(channel, position);
+    }
+
+    public ChannelWriter write(byte[] data) throws IOException {
+        return write(ByteBuffer.wrap(data));
+    }
+
+    public ChannelWriter write(ByteBuffer data) throws IOException {
+        while (data.hasRemaining()) {
+            if (!buffer.hasRemaining()) {
+                flush();
+            }
+            int length = Math.min(buffer.remaining(), data.remaining());
+            buffer.put(buffer.position(), data, data.position(), length);
+            buffer.position(buffer.position() + length);
+            data.position(data.position() + length);
+        }
+        return this;
+    }
+
+    /**
+     * Writes the buffered bytes.
+     */
+    public void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            if (position < 0) {
+                written += channel.write(buffer);
+            } else {
+                int count = channel.write(buffer, position);
+                position += count;
+                written += count;
+            }
+        }
+        buffer.clear();
+    }
+
+    /**
+     * @return bytes written to the channel so far
+     */
+    public long written() {
+        return written;
+    }
+
+    /**
+     * Writes the buffered bytes and gives the buffer back to the thread. The channel is left open.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            buffer.clear();
+            BUFFERS.set(buffer);
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package org.my.manager.storage;
+
+import org.my.task.Task;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Data file compressed in independent blocks. After {@link #MAGIC MAGIC} and the length-prefixed header of the
+ * {@link RecordFormat record format} every block is its compressed length, its raw length and the
+ * {@link Deflater deflated} records. Blocks hold whole records, so they are inflated and decoded in parallel.
+ * <p>
+ * Records are addressed by their offset in the raw records, so compressed files can't be edited in place.
+ * A block which can't be inflated or holds a damaged record ends the read like a torn record.
+ */
+public final class CompressedRecordFile {
+    static final byte[] MAGIC = new byte[]{'K', 'B', 'Z', 1};
+    private static final int BLOCK_HEADER = 2 * Integer.BYTES;
+    private static final int BLOCK_SIZE = 1 << 18;
+    private static final int MAX_BLOCK_SIZE = 1 << 26;
+    private static final int BLOCKS_PER_CHUNK = 4;
+
+    private CompressedRecordFile() {
+    }
+
+    public static boolean isCompressed(Path file) throws IOException {
+        if (Files.notExists(file)) {
+            return false;
+        }
+        try (InputStream in = Files.newInputStream(file)) {
+            return Arrays.equals(in.readNBytes(MAGIC.length), MAGIC);
+        }
+    }
+
+    /**
+     * @return header of the record format of the compressed file
+     */
+    static byte[] innerHeader(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        int length = data.readInt();
+        if (length < 0 || length > BLOCK_SIZE) {
+            throw new IOException("not a compressed task file");
+        }
+        return data.readNBytes(length);
+    }
+
+    /**
+     * Reads the blocks of the file in parallel and reports the records in file order from the calling thread.
+     * Offsets of the records are their positions in the raw records.
+     *
+     * @return the read result, its valid length is the end of the last intact block
+     */
+    static ParallelRecordReader.Result read(FileChannel channel, RecordFormat recordFormat, ForkJoinPool pool,
+                                            RecordFormat.RecordVisitor visitor)
+            throws IOException, InterruptedException, ExecutionException {
+        long size = channel.size();
+        ByteBuffer header = ByteBuffer.allocate(MAGIC.length + Integer.BYTES);
+        readFully(channel, header, 0);
+        long position = header.capacity() + header.getInt(MAGIC.length);
+        List<Block> blocks = new ArrayList<>();
+        long rawOffset = 0;
+        ByteBuffer blockHeader = ByteBuffer.allocate(BLOCK_HEADER);
+        while (position + BLOCK_HEADER <= size) {
+            blockHeader.clear();
+            readFully(channel, blockHeader, position);
+            int compressedLength = blockHeader.getInt(0);
+            int rawLength = blockHeader.getInt(Integer.BYTES);
+            if (compressedLength < 0 || rawLength < 0 || rawLength > MAX_BLOCK_SIZE
+                    || position + BLOCK_HEADER + compressedLength > size) {
+                break;
+            }
+            blocks.add(new Block(position, compressedLength, rawOffset, rawLength));
+            position += BLOCK_HEADER + compressedLength;
+            rawOffset += rawLength;
+        }
+        List<Callable<List<Entry>>> chunks = new ArrayList<>();
+        for (int i = 0; i < blocks.size(); i += BLOCKS_PER_CHUNK) {
+            List<Block> chunk = blocks.subList(i, Math.min(i + BLOCKS_PER_CHUNK, blocks.size()));
+            chunks.add(() -> {
+                List<Entry> entries = new ArrayList<>();
+                for (Block block : chunk) {
+                    entries.add(readBlock(channel, recordFormat, block));
+                    if (entries.getLast().records() == null) {
+                        break;
+                    }
+                }
+                return entries;
+            });
+        }
+        long validLength = header.capacity() + header.getInt(MAGIC.length);
+        for (Future<List<Entry>> chunk : pool.invokeAll(chunks)) {
+            for (Entry entry : chunk.get()) {
+                if (entry.records() == null) {
+                    return new ParallelRecordReader.Result(size, validLength, List.of());
+                }
+                for (Record record : entry.records()) {
+                    visitor.visit(record.offset(), record.length(), record.task());
+                }
+                validLength = entry.block().position() + BLOCK_HEADER + entry.block().compressedLength();
+            }
+        }
+        return new ParallelRecordReader.Result(size, validLength, List.of());
+    }
+
+    /**
+     * @return the block with its records, or with null records if the block is damaged
+     */
+    private static Entry readBlock(FileChannel channel, RecordFormat recordFormat, Block block) throws IOException {
+        ByteBuffer compressed = ByteBuffer.allocate(block.compressedLength());
+        readFully(channel, compressed, block.position() + BLOCK_HEADER);
+        byte[] raw = new byte[block.rawLength()];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed.array());
+            int inflated = 0;
+            while (inflated < raw.length && !inflater.finished()) {
+                int count = inflater.inflate(raw, inflated, raw.length - inflated);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    return new Entry(block, null);
+                }
+                inflated += count;
+            }
+            if (inflated != raw.length) {
+                return new Entry(block, null);
+            }
+        } catch (DataFormatException e) {
+            return new Entry(block, null);
+        } finally {
+            inflater.end();
+        }
+        List<Record> records = new ArrayList<>();
+        boolean[] damaged = new boolean[1];
+        long end = recordFormat.read(ByteBuffer.wrap(raw), block.rawOffset(), new RecordFormat.RecordVisitor() {
+            @Override
+            public void visit(long offset, int length, Task task) {
+                records.add(new Record(offset, length, task));
+            }
+
+            @Override
+            public void corrupt(long offset, int length) {
+                damaged[0] = true;
+            }
+        });
+        if (damaged[0] || end != block.rawOffset() + block.rawLength()) {
+            return new Entry(block, null);
+        }
+        return new Entry(block, records);
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("compressed file truncated at " + (position + buffer.position()));
+            }
+        }
+        buffer.flip();
+    }
+
+    /**
+     * Collects records into blocks and writes every full block deflated to the stream.
+     */
+    public static class Writer implements Closeable {
+        private final OutputStream out;
+        private final Deflater deflater;
+        private final ByteArrayOutputStream block = new ByteArrayOutputStream(BLOCK_SIZE);
+        private final byte[] output = new byte[BLOCK_SIZE];
+
+        /**
+         * Writes the file header, records are expected in the given format.
+         *
+         * @param level - {@link Deflater} compression level
+         */
+        public Writer(OutputStream out, RecordFormat recordFormat, int level) throws IOException {
+            this.out = out;
+            this.deflater = new Deflater(level);
+            byte[] header = recordFormat.header();
+            out.write(MAGIC);
+            out.write(ByteBuffer.allocate(Integer.BYTES).putInt(header.length).array());
+            out.write(header);
+        }
+
+        public void write(byte[] record) throws IOException {
+            block.write(record);
+            if (block.size() >= BLOCK_SIZE) {
+                flushBlock();
+            }
+        }
+
+        private void flushBlock() throws IOException {
+            if (block.size() == 0) {
+                return;
+            }
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(block.size() / 2);
+            deflater.reset();
+            deflater.setInput(block.toByteArray());
+            deflater.finish();
+            while (!deflater.finished()) {
+                compressed.write(output, 0, deflater.deflate(output));
+            }
+            out.write(ByteBuffer.allocate(BLOCK_HEADER).putInt(compressed.size()).putInt(block.size()).array());
+            compressed.writeTo(out);
+            block.reset();
+        }
+
+        /**
+         * Writes the last block, the stream is left open.
+         */
+        @Override
+        public void close() throws IOException {
+            try {
+                flushBlock();
+            } finally {
+                deflater.end();
+            }
+        }
+    }
+
+    private record Block(long position, int compressedLength, long rawOffset, int rawLength) {
+    }
+
+    private record Entry(Block block, List<Record> records) {
+    }
+
+    private record Record(long offset, int length, Task task) {
+    }
+}
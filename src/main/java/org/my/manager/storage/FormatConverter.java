@@ -0,0 +1,45 @@
+package org.my.manager.storage;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Converts data files between {@link RecordFormat record formats}.
+ * Usage: {@code FormatConverter <source> <target> <text|binary>}.
+ */
+public final class FormatConverter {
+
+    private FormatConverter() {
+    }
+
+    /**
+     * Rewrites the records of the source file, whatever its format, into the target file in the target format.
+     * Blank slots are dropped, and so are records of a damaged source which fail their checksum or are torn.
+     * Source and target may be the same file, the target is replaced atomically.
+     */
+    public static void convert(Path source, Path target, RecordFormat targetFormat) throws IOException {
+        RecordFormat sourceFormat = RecordFormat.detect(source, targetFormat);
+        Path tmpFile = target.resolveSibling(target.getFileName() + ".tmp");
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(tmpFile))) {
+            out.write(targetFormat.header());
+            ParallelRecordReader.read(source, sourceFormat, ForkJoinPool.commonPool(), (offset, length, task) -> {
+                if (task != null) {
+                    out.write(targetFormat.encode(task));
+                }
+            });
+        }
+        Files.move(tmpFile, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3) {
+            System.err.println("usage: FormatConverter <source> <target> <text|binary>");
+            System.exit(1);
+        }
+        convert(Paths.get(args[0]), Paths.get(args[1]), RecordFormat.of(args[2]));
+    }
+}
@@ -0,0 +1,150 @@
+package org.my.manager.storage;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Decides when written records are forced to the storage device.
+ * <p>
+ * Every write {@link #register(int) registers} itself and gets a ticket, then {@link #await(long, Flush) awaits}
+ * its ticket outside of the writer's lock. With {@link Durability#GROUP GROUP} durability the first waiter
+ * becomes the leader: it collects writes for {@link #windowNanos windowNanos} or until
+ * {@link #sizeThreshold sizeThreshold} bytes are pending and issues one force for all of them,
+ * the rest of the waiters are released when the force covering their tickets completes.
+ */
+public class GroupCommit {
+    private final Durability durability;
+    private final long windowNanos;
+    private final long sizeThreshold;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private long written;
+    private long synced;
+    private long pendingBytes;
+    private boolean syncing;
+    private final AtomicLong forces = new AtomicLong();
+
+    public GroupCommit(Durability durability, long windowMicros, long sizeThreshold) {
+        this.durability = durability;
+        this.windowNanos = TimeUnit.MICROSECONDS.toNanos(windowMicros);
+        this.sizeThreshold = sizeThreshold;
+    }
+
+    public Durability getDurability() {
+        return durability;
+    }
+
+    /**
+     * @return number of forces issued so far
+     */
+    public long getForceCount() {
+        return forces.get();
+    }
+
+    /**
+     * Registers a write which has been handed to the channel.
+     *
+     * @param bytes - size of the write
+     * @return ticket to {@link #await(long, Flush) await}
+     */
+    public long register(int bytes) {
+        lock.lock();
+        try {
+            pendingBytes += bytes;
+            if (pendingBytes >= sizeThreshold) {
+                changed.signalAll();
+            }
+            return ++written;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns when the write of the ticket is durable according to {@link #durability durability}.
+     *
+     * @param ticket - ticket returned by {@link #register(int) register}
+     * @param flush  - forces the channel the write went to
+     */
+    public void await(long ticket, Flush flush) throws IOException {
+        switch (durability) {
+            case OS -> {
+                return;
+            }
+            case OP -> {
+                flush.force();
+                forces.incrementAndGet();
+                return;
+            }
+            case GROUP -> {
+            }
+        }
+        lock.lock();
+        try {
+            while (synced < ticket) {
+                if (syncing) {
+                    changed.awaitUninterruptibly();
+                    continue;
+                }
+                syncing = true;
+                long remaining = windowNanos;
+                try {
+                    while (pendingBytes < sizeThreshold && remaining > 0) {
+                        remaining = changed.awaitNanos(remaining);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                long target = written;
+                pendingBytes = 0;
+                boolean forced = false;
+                lock.unlock();
+                try {
+                    flush.force();
+                    forces.incrementAndGet();
+                    forced = true;
+                } finally {
+                    lock.lock();
+                    syncing = false;
+                    if (forced) {
+                        synced = Math.max(synced, target);
+                    }
+                    changed.signalAll();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Marks every registered write as durable, e.g. after the channel was forced on close.
+     */
+    public void markSynced() {
+        lock.lock();
+        try {
+            synced = written;
+            pendingBytes = 0;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public enum Durability {
+        // force after every write
+        OP,
+        // one force for a group of writes
+        GROUP,
+        // leave flushing to the operating system
+        OS
+    }
+
+    @FunctionalInterface
+    public interface Flush {
+        void force() throws IOException;
+    }
+}
@@ -0,0 +1,159 @@
+package org.my.manager.storage;
+
+import org.my.util.TaskStringifier;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.SequencedSet;
+
+/**
+ * Append-only journal of the browsing history. After the header every line is a touched id,
+ * which moves the id to the end of the history, or a removed id prefixed with a record separator.
+ * A {@link #compact(List) compacted} journal is the history itself: touched ids, oldest first.
+ * <p>
+ * Records are written to the file without forcing, so they survive a crash of the process
+ * and are forced on compaction and close.
+ */
+public class HistoryJournal implements AutoCloseable {
+    private static final int MIN_COMPACTION_RECORDS = 1024;
+    private static final byte[] HEADER = TaskStringifier.HISTORY_HEADER.getBytes(StandardCharsets.UTF_8);
+
+    private final Path file;
+    private FileChannel channel;
+    private long records;
+    private long compactedSize;
+
+    private HistoryJournal(Path file, long records, long compactedSize) {
+        this.file = file;
+        this.records = records;
+        this.compactedSize = compactedSize;
+    }
+
+    /**
+     * Opens the journal for appending.
+     *
+     * @param replay - result of the {@link #replay(Path) replay} of the journal
+     */
+    public static HistoryJournal open(Path file, Replay replay) throws IOException {
+        HistoryJournal journal = new HistoryJournal(file, replay.records(), replay.history().size());
+        journal.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        if (journal.channel.size() == 0) {
+            journal.write(HEADER);
+        }
+        return journal;
+    }
+
+    /**
+     * Applies the records of the journal in order. Lines of the former task-per-line history format
+     * are read as touched ids.
+     *
+     * @return the history, oldest first
+     */
+    public static Replay replay(Path file) throws IOException {
+        SequencedSet<String> history = new LinkedHashSet<>();
+        long records = 0;
+        if (Files.notExists(file)) {
+            return new Replay(List.of(), 0);
+        }
+        try (BufferedReader br = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            br.readLine();
+            String line;
+            while ((line = br.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                records++;
+                if (line.startsWith(TaskStringifier.RECORD_SEPARATOR)) {
+                    history.remove(line.substring(TaskStringifier.RECORD_SEPARATOR.length()));
+                    continue;
+                }
+                int end = line.indexOf(TaskStringifier.RECORD_SEPARATOR);
+                String id = end < 0 ? line : line.substring(0, end);
+                history.remove(id);
+                history.add(id);
+            }
+        }
+        return new Replay(new ArrayList<>(history), records);
+    }
+
+    public synchronized void touched(String id) throws IOException {
+        append(id);
+    }
+
+    public synchronized void removed(String id) throws IOException {
+        append(TaskStringifier.RECORD_SEPARATOR + id);
+    }
+
+    /**
+     * @return true if the journal holds more than twice the records of the last compacted history,
+     * so compaction cost is amortized over the appends
+     */
+    public synchronized boolean needsCompaction() {
+        return records > MIN_COMPACTION_RECORDS && records > 2 * compactedSize;
+    }
+
+    /**
+     * Replaces the journal with the given history. The new journal is written aside and moved
+     * over the old one, so a crash leaves either of them intact.
+     */
+    public synchronized void compact(List<String> history) throws IOException {
+        Path tmpFile = file.resolveSibling(file.getFileName() + ".tmp");
+        write(tmpFile, history);
+        channel.close();
+        Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        records = history.size();
+        compactedSize = history.size();
+    }
+
+    /**
+     * Writes the history as a compacted journal to the given file and forces it.
+     */
+    public static void write(Path file, List<String> history) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file))) {
+            out.write(HEADER);
+            for (String id : history) {
+                out.write((id + TaskStringifier.LINE_SEPARATOR).getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        try (FileChannel written = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            written.force(true);
+        }
+    }
+
+    private void append(String record) throws IOException {
+        write((record + TaskStringifier.LINE_SEPARATOR).getBytes(StandardCharsets.UTF_8));
+        records++;
+    }
+
+    private void write(byte[] bytes) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel.isOpen()) {
+            channel.force(false);
+            channel.close();
+        }
+    }
+
+    /**
+     * @param records - number of records in the journal
+     */
+    public record Replay(List<String> history, long records) {
+    }
+}
@@ -0,0 +1,19 @@
+package org.my.manager.storage;
+
+import org.my.task.Task;
+
+public record LogRecord(Operation operation, String id, Task task) {
+
+    public static LogRecord upsert(Task task) {
+        return new LogRecord(Operation.UPSERT, task.getId(), task);
+    }
+
+    public static LogRecord tombstone(String id) {
+        return new LogRecord(Operation.TOMBSTONE, id, null);
+    }
+
+    public enum Operation {
+        UPSERT,
+        TOMBSTONE
+    }
+}
@@ -0,0 +1,161 @@
+package org.my.manager.storage;
+
+import org.my.task.Task;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Reads data files by {@link RecordFormat#split(FileChannel, int) splitting} them into chunks of whole records
+ * which are read with positional reads and decoded, checksums included, in parallel on a {@link ForkJoinPool}.
+ * The decoded records are reported to the visitor from the calling thread in file order,
+ * so visitors do not need to be thread safe.
+ * <p>
+ * Damage does not fail the read: records failing their checksum are skipped and a torn record ends the read.
+ * Both are returned as a {@link Result} which can {@link Result#repair(Path, RecordFormat) repair} the file.
+ * {@link CompressedRecordFile Compressed} files are read by their blocks instead.
+ */
+public final class ParallelRecordReader {
+    private static final long MIN_CHUNK = 1 << 20;
+    private static final long MAX_CHUNK = 1 << 26;
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private ParallelRecordReader() {
+    }
+
+    public static Result read(Path dataFile, RecordFormat recordFormat, ForkJoinPool pool,
+                              RecordFormat.RecordVisitor visitor) throws IOException {
+        return read(dataFile, recordFormat, pool, MIN_CHUNK, visitor);
+    }
+
+    /**
+     * @param minChunk - files smaller than two chunks are read on the calling thread
+     */
+    static Result read(Path dataFile, RecordFormat recordFormat, ForkJoinPool pool, long minChunk,
+                       RecordFormat.RecordVisitor visitor) throws IOException {
+        boolean compressed = CompressedRecordFile.isCompressed(dataFile);
+        try (FileChannel channel = FileChannel.open(dataFile, StandardOpenOption.READ)) {
+            if (compressed) {
+                return CompressedRecordFile.read(channel, recordFormat, pool, visitor);
+            }
+            long size = channel.size();
+            boolean sequential = size < minChunk * 2 || pool.getParallelism() < 2;
+            int parts = (int) Math.max(sequential ? 1 : Math.min((long) pool.getParallelism() * CHUNKS_PER_THREAD,
+                    size / minChunk), size / MAX_CHUNK + 1);
+            long[] bounds = recordFormat.split(channel, parts);
+            List<Callable<Chunk>> chunks = new ArrayList<>(parts);
+            for (int i = 0; i < parts; i++) {
+                long start = bounds[i];
+                long end = bounds[i + 1];
+                if (end > start) {
+                    chunks.add(() -> readChunk(channel, recordFormat, start, end));
+                }
+            }
+            List<Future<Chunk>> futures = sequential ? null : pool.invokeAll(chunks);
+            List<RecordIndex.Slot> corrupt = new ArrayList<>();
+            long validLength = bounds[0];
+            for (int i = 0; i < chunks.size(); i++) {
+                Chunk chunk = sequential ? chunks.get(i).call() : futures.get(i).get();
+                for (Entry entry : chunk.entries()) {
+                    if (entry.corrupt()) {
+                        corrupt.add(new RecordIndex.Slot(entry.offset(), entry.length()));
+                    } else {
+                        visitor.visit(entry.offset(), entry.length(), entry.task());
+                    }
+                }
+                validLength = chunk.validEnd();
+                if (chunk.validEnd() < chunk.end()) {
+                    break;
+                }
+            }
+            return new Result(size, validLength, corrupt);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("data file read interrupted");
+        } catch (ExecutionException e) {
+            switch (e.getCause()) {
+                case IOException ioException -> throw ioException;
+                case RuntimeException runtimeException -> throw runtimeException;
+                default -> throw new IOException(e.getCause());
+            }
+        } catch (IOException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static Chunk readChunk(FileChannel channel, RecordFormat recordFormat, long start, long end)
+            throws IOException {
+        if (end - start > Integer.MAX_VALUE) {
+            throw new IOException("record chunk too large at " + start);
+        }
+        ByteBuffer chunk = ByteBuffer.allocate((int) (end - start));
+        while (chunk.hasRemaining()) {
+            if (channel.read(chunk, start + chunk.position()) < 0) {
+                throw new EOFException("data file truncated at " + (start + chunk.position()));
+            }
+        }
+        chunk.flip();
+        List<Entry> entries = new ArrayList<>();
+        long validEnd = recordFormat.read(chunk, start, new RecordFormat.RecordVisitor() {
+            @Override
+            public void visit(long offset, int length, Task task) {
+                entries.add(new Entry(offset, length, task, false));
+            }
+
+            @Override
+            public void corrupt(long offset, int length) {
+                entries.add(new Entry(offset, length, null, true));
+            }
+        });
+        return new Chunk(entries, validEnd, end);
+    }
+
+    /**
+     * @param size        - size of the file when it was read
+     * @param validLength - length of the file up to its first torn record
+     * @param corrupt     - records before that point which failed their checksum
+     */
+    public record Result(long size, long validLength, List<RecordIndex.Slot> corrupt) {
+
+        public boolean damaged() {
+            return validLength < size || !corrupt.isEmpty();
+        }
+
+        /**
+         * Truncates the torn tail and blanks the corrupt records, so the file reads clean again.
+         * Only the damaged parts are written, however large the file is.
+         */
+        public void repair(Path dataFile, RecordFormat recordFormat) throws IOException {
+            if (!damaged()) {
+                return;
+            }
+            try (FileChannel channel = FileChannel.open(dataFile, StandardOpenOption.WRITE)) {
+                for (RecordIndex.Slot slot : corrupt) {
+                    ByteBuffer blank = recordFormat.blankSlot(slot.length());
+                    while (blank.hasRemaining()) {
+                        channel.write(blank, slot.offset() + blank.position());
+                    }
+                }
+                channel.truncate(validLength);
+                channel.force(true);
+            }
+        }
+    }
+
+    private record Chunk(List<Entry> entries, long validEnd, long end) {
+    }
+
+    private record Entry(long offset, int length, Task task, boolean corrupt) {
+    }
+}
@@ -0,0 +1,136 @@
+package org.my.manager.storage;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs writes on a single persistence thread in the order they were submitted.
+ * Writes wait in a bounded ring buffer; when it is full, {@link #submit(Job) submit} blocks the caller,
+ * so a slow disk slows callers down instead of piling up memory.
+ */
+public class PersistenceQueue implements AutoCloseable {
+    private static final Entry STOP = new Entry(() -> {
+    }, null, 0);
+
+    private final BlockingQueue<Entry> queue;
+    private final int capacity;
+    private final Thread worker;
+    private volatile boolean closed;
+    private volatile Entry running;
+    private volatile CompletableFuture<Void> last = CompletableFuture.completedFuture(null);
+    private volatile long lastFlushNanos;
+    private final LongAdder flushNanos = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    public PersistenceQueue(int capacity, String threadName) {
+        this.capacity = capacity;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.worker = new Thread(this::work, threadName);
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * Enqueues the write, waiting for space if the queue is full.
+     *
+     * @return future completed once the write has been done
+     */
+    public synchronized CompletableFuture<Void> submit(Job job) throws InterruptedException {
+        if (closed) {
+            throw new IllegalStateException("persistence queue is closed");
+        }
+        Entry entry = new Entry(job, new CompletableFuture<>(), System.nanoTime());
+        queue.put(entry);
+        last = entry.future();
+        return entry.future();
+    }
+
+    /**
+     * @return future completed once every write submitted so far has been done
+     */
+    public CompletableFuture<Void> flush() {
+        return last.handle((result, e) -> null);
+    }
+
+    public Metrics metrics() {
+        Entry oldest = running;
+        if (oldest == null) {
+            oldest = queue.peek();
+        }
+        long lag = oldest == null || oldest == STOP ? 0 : System.nanoTime() - oldest.enqueuedNanos();
+        long done = completed.sum() + failed.sum();
+        return new Metrics(queue.size(), capacity, lag, lastFlushNanos,
+                done == 0 ? 0 : flushNanos.sum() / done, completed.sum(), failed.sum());
+    }
+
+    private void work() {
+        while (true) {
+            Entry entry;
+            try {
+                entry = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (entry == STOP) {
+                return;
+            }
+            running = entry;
+            long start = System.nanoTime();
+            try {
+                entry.job().run();
+                completed.increment();
+                entry.future().complete(null);
+            } catch (Exception e) {
+                failed.increment();
+                entry.future().completeExceptionally(e);
+            } finally {
+                lastFlushNanos = System.nanoTime() - start;
+                flushNanos.add(lastFlushNanos);
+                running = null;
+            }
+        }
+    }
+
+    /**
+     * Stops accepting writes and waits until the queued ones are done.
+     *
+     * @throws InterruptedIOException if interrupted before the queued writes are done, the interrupt is kept
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            queue.put(STOP);
+            worker.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting for queued writes");
+        }
+    }
+
+    @FunctionalInterface
+    public interface Job {
+        void run() throws Exception;
+    }
+
+    /**
+     * @param depth             - writes waiting in the queue
+     * @param lagNanos          - age of the oldest write not done yet
+     * @param lastFlushNanos    - duration of the last write
+     * @param averageFlushNanos - average duration of a write
+     */
+    public record Metrics(int depth, int capacity, long lagNanos, long lastFlushNanos, long averageFlushNanos,
+                          long completed, long failed) {
+    }
+
+    private record Entry(Job job, CompletableFuture<Void> future, long enqueuedNanos) {
+    }
+}
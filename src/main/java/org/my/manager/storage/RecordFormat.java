@@ -0,0 +1,127 @@
+package org.my.manager.storage;
+
+import org.my.task.Task;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.function.Consumer;
+
+/**
+ * On-disk representation of data files and task logs.
+ */
+public interface RecordFormat {
+
+    static RecordFormat of(String name) {
+        return switch (name.toLowerCase(Locale.ROOT)) {
+            case TextRecordFormat.NAME -> TextRecordFormat.INSTANCE;
+            case BinaryRecordFormat.NAME -> BinaryRecordFormat.INSTANCE;
+            default -> throw new IllegalArgumentException("unknown record format " + name);
+        };
+    }
+
+    /**
+     * Detects the format of the file by its first bytes, the records of a {@link CompressedRecordFile compressed}
+     * file included. Files written before records were checksummed
+     * are detected as a legacy variant of their format, which differs from every {@link #of(String) named} one.
+     *
+     * @return format of the file or fallback if the file is empty or missing
+     */
+    static RecordFormat detect(Path file, RecordFormat fallback) throws IOException {
+        if (Files.notExists(file) || Files.size(file) == 0) {
+            return fallback;
+        }
+        byte[] prefix;
+        try (InputStream in = Files.newInputStream(file)) {
+            prefix = in.readNBytes(BinaryRecordFormat.MAGIC.length);
+            if (Arrays.equals(prefix, CompressedRecordFile.MAGIC)) {
+                prefix = Arrays.copyOf(CompressedRecordFile.innerHeader(in), prefix.length);
+            }
+        }
+        if (Arrays.equals(prefix, BinaryRecordFormat.MAGIC)) {
+            return BinaryRecordFormat.INSTANCE;
+        }
+        if (Arrays.equals(prefix, BinaryRecordFormat.LEGACY_MAGIC)) {
+            return BinaryRecordFormat.LEGACY;
+        }
+        if (Arrays.equals(prefix, TextRecordFormat.CRC_MARK)) {
+            return TextRecordFormat.INSTANCE;
+        }
+        return TextRecordFormat.LEGACY;
+    }
+
+    String name();
+
+    /**
+     * @return bytes a data file starts with
+     */
+    byte[] header();
+
+    /**
+     * @return bytes a task log starts with
+     */
+    byte[] logHeader();
+
+    /**
+     * @return complete data record of the task
+     */
+    byte[] encode(Task task);
+
+    /**
+     * Pads an {@link #encode(Task) encoded} record to the slot length, padding is ignored by {@link #read read}.
+     */
+    ByteBuffer toSlot(byte[] record, int slotLength);
+
+    /**
+     * @return slot without a record, {@link #read read} reports it with null task
+     */
+    ByteBuffer blankSlot(int slotLength);
+
+    byte[] encode(LogRecord record);
+
+    /**
+     * Splits the records of a data file into at most {@code parts} runs of whole records
+     * which can be {@link #read(ByteBuffer, long, RecordVisitor) read} independently.
+     * The bounds are found from the record framing only, records are not validated.
+     *
+     * @return ascending chunk boundaries, the first is the end of the header and the last is the size of the file
+     */
+    long[] split(FileChannel channel, int parts) throws IOException;
+
+    /**
+     * Reads the records of a {@link #split(FileChannel, int) chunk} of a data file.
+     *
+     * Reading stops at a record which is cut off by the end of the chunk.
+     *
+     * @param offset - position of the chunk in the data file
+     * @return position in the data file after the last whole record
+     */
+    long read(ByteBuffer chunk, long offset, RecordVisitor visitor) throws IOException;
+
+    /**
+     * Reads a task log from its start, header included.
+     *
+     * @return length of the valid prefix of the log, shorter than the log if its tail is torn or corrupt
+     */
+    long readLog(InputStream in, Consumer<LogRecord> consumer) throws IOException;
+
+    @FunctionalInterface
+    interface RecordVisitor {
+        /**
+         * @param task - decoded task or null for a blank slot
+         */
+        void visit(long offset, int length, Task task) throws IOException;
+
+        /**
+         * Reports a record whose checksum does not match, by default the read fails.
+         */
+        default void corrupt(long offset, int length) throws IOException {
+            throw new IOException("corrupt record at " + offset);
+        }
+    }
+}
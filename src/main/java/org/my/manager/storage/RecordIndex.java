@@ -0,0 +1,118 @@
+package org.my.manager.storage;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Maps task ids to the slots their records occupy in the data file, so a record can be overwritten or blanked
+ * without scanning the file.
+ * <p>
+ * Records are written into padded {@link #slotLength(int) slots}, see {@link RecordFormat#toSlot},
+ * so an update that fits into the slot is written in place. A removed record leaves a
+ * {@link RecordFormat#blankSlot blank slot}.
+ * <p>
+ * The index is kept in memory and {@link #store(Path) stored} to the sidecar file on close.
+ * The sidecar is deleted when the index is {@link #open(Path, Path, RecordFormat) opened}, so after a crash,
+ * or if the data file was changed behind the index' back, the index is rebuilt from the data file.
+ */
+public class RecordIndex {
+    public static final int SLOT_ALIGNMENT = 64;
+    private static final int MAGIC = 0x4B494458;
+
+    private final Path indexFile;
+    private final Map<String, Slot> slots = new HashMap<>();
+
+    private RecordIndex(Path indexFile) {
+        this.indexFile = indexFile;
+    }
+
+    public static RecordIndex open(Path indexFile, Path dataFile, RecordFormat recordFormat) throws IOException {
+        RecordIndex recordIndex = new RecordIndex(indexFile);
+        if (!recordIndex.load(dataFile)) {
+            recordIndex.rebuild(dataFile, recordFormat);
+        }
+        Files.deleteIfExists(indexFile);
+        return recordIndex;
+    }
+
+    public Slot get(String id) {
+        return slots.get(id);
+    }
+
+    public void put(String id, Slot slot) {
+        slots.put(id, slot);
+    }
+
+    public Slot remove(String id) {
+        return slots.remove(id);
+    }
+
+    public void clear() {
+        slots.clear();
+    }
+
+    private boolean load(Path dataFile) throws IOException {
+        if (Files.notExists(indexFile)) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile)))) {
+            if (in.readInt() != MAGIC || in.readLong() != Files.size(dataFile)) {
+                return false;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                slots.put(in.readUTF(), new Slot(in.readLong(), in.readInt()));
+            }
+            return true;
+        } catch (EOFException e) {
+            slots.clear();
+            return false;
+        }
+    }
+
+    /**
+     * Scans the data file and maps every record except blank slots.
+     */
+    private void rebuild(Path dataFile, RecordFormat recordFormat) throws IOException {
+        slots.clear();
+        ParallelRecordReader.read(dataFile, recordFormat, ForkJoinPool.commonPool(), (offset, length, task) -> {
+            if (task != null) {
+                slots.put(task.getId(), new Slot(offset, length));
+            }
+        });
+    }
+
+    /**
+     * Writes the index to the sidecar file together with the size of the data file it describes.
+     */
+    public void store(Path dataFile) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(indexFile,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)))) {
+            out.writeInt(MAGIC);
+            out.writeLong(Files.size(dataFile));
+            out.writeInt(slots.size());
+            for (Map.Entry<String, Slot> entry : slots.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeLong(entry.getValue().offset());
+                out.writeInt(entry.getValue().length());
+            }
+        }
+    }
+
+    /**
+     * Slot for a new record: the record and an eighth of its size as headroom for edits, e.g. status changes,
+     * aligned to {@link #SLOT_ALIGNMENT SLOT_ALIGNMENT}.
+     */
+    public static int slotLength(int recordLength) {
+        int withHeadroom = recordLength + (recordLength >> 3);
+        return (withHeadroom + SLOT_ALIGNMENT - 1) / SLOT_ALIGNMENT * SLOT_ALIGNMENT;
+    }
+
+    public record Slot(long offset, int length) {
+    }
+}
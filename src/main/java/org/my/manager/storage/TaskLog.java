@@ -0,0 +1,216 @@
+package org.my.manager.storage;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Append-only log of task mutations. Every record is either an upsert carrying the full task
+ * or a tombstone carrying the id of a removed task, so a mutation costs one append
+ * regardless of the size of the board.
+ * <p>
+ * For compaction the active log is {@link #seal() sealed}: it is renamed aside and a fresh log is started,
+ * so the sealed part can be folded into a snapshot while new records keep being appended.
+ * <p>
+ * Appends are made durable through {@link GroupCommit}, the force is issued outside of the log's monitor
+ * so that other appends can join the same commit group.
+ */
+public class TaskLog implements AutoCloseable {
+    private static final String SEALED_SUFFIX = ".sealed";
+
+    private final Path path;
+    private final Path sealedPath;
+    private final RecordFormat recordFormat;
+    private final GroupCommit groupCommit;
+    private FileChannel channel;
+
+    public TaskLog(Path path, RecordFormat recordFormat, GroupCommit groupCommit) throws IOException {
+        this.path = path;
+        this.recordFormat = recordFormat;
+        this.groupCommit = groupCommit;
+        this.sealedPath = sealedPath(path);
+        this.channel = open(path);
+    }
+
+    /**
+     * @return true if there is a log at the path or a log sealed from it
+     */
+    public static boolean exists(Path path) {
+        return Files.exists(path) || Files.exists(sealedPath(path));
+    }
+
+    private static Path sealedPath(Path path) {
+        return path.resolveSibling(path.getFileName() + SEALED_SUFFIX);
+    }
+
+    private FileChannel open(Path path) throws IOException {
+        FileChannel opened = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        if (opened.size() == 0) {
+            writeHeader(opened);
+        }
+        return opened;
+    }
+
+    private void writeHeader(FileChannel target) throws IOException {
+        ByteBuffer header = ByteBuffer.wrap(recordFormat.logHeader());
+        while (header.hasRemaining()) {
+            target.write(header);
+        }
+    }
+
+    /**
+     * @return true if the log can't just be appended to: a sealed log was left by an unfinished compaction
+     * or the active log holds records in another format.
+     */
+    public synchronized boolean needsCompaction() throws IOException {
+        return Files.exists(sealedPath)
+                || channel.size() > recordFormat.logHeader().length
+                && RecordFormat.detect(path, recordFormat) != recordFormat;
+    }
+
+    /**
+     * Appends the records in one write, they are durable once the returned ticket is {@link #await(long) awaited}.
+     * Callers serializing their writes await outside of their lock, so that other writes can join the same
+     * commit group.
+     *
+     * @return ticket of the write
+     */
+    public long write(List<LogRecord> records) throws IOException {
+        List<byte[]> encoded = new ArrayList<>(records.size());
+        for (LogRecord record : records) {
+            encoded.add(recordFormat.encode(record));
+        }
+        synchronized (this) {
+            long length;
+            try (ChannelWriter writer = ChannelWriter.append(channel)) {
+                for (byte[] data : encoded) {
+                    writer.write(data);
+                }
+                writer.flush();
+                length = writer.written();
+            }
+            return groupCommit.register((int) length);
+        }
+    }
+
+    /**
+     * Returns when the write of the ticket is durable, the records are forced together with other writes
+     * waiting at the same time.
+     */
+    public void await(long ticket) throws IOException {
+        groupCommit.await(ticket, this::force);
+    }
+
+    private void force() throws IOException {
+        FileChannel active;
+        synchronized (this) {
+            active = channel;
+        }
+        try {
+            active.force(false);
+        } catch (ClosedChannelException e) {
+            // the channel was sealed or closed, both force it before closing
+        }
+    }
+
+    public synchronized long size() throws IOException {
+        return channel.size();
+    }
+
+    /**
+     * Moves the active log aside and starts a new one.
+     *
+     * @return false if a previously sealed log has not been dropped yet, in that case nothing is changed.
+     */
+    public synchronized boolean seal() throws IOException {
+        if (Files.exists(sealedPath)) {
+            return false;
+        }
+        channel.force(false);
+        channel.close();
+        Files.move(path, sealedPath, StandardCopyOption.ATOMIC_MOVE);
+        channel = open(path);
+        return true;
+    }
+
+    /**
+     * Drops the sealed log once its records are part of a durable snapshot.
+     */
+    public void dropSealed() throws IOException {
+        Files.deleteIfExists(sealedPath);
+    }
+
+    /**
+     * Drops the sealed log and empties the active one. Used after a snapshot of the whole state was written.
+     */
+    public synchronized void reset() throws IOException {
+        dropSealed();
+        channel.truncate(0);
+        writeHeader(channel);
+        channel.force(true);
+    }
+
+    /**
+     * Feeds every record to the consumer, sealed log first, in the order they were appended.
+     * Each log is read in the format it was written in. A log whose tail was torn by a crash or fails
+     * its checksums is truncated to its last good record.
+     *
+     * @return number of torn bytes truncated from the logs
+     */
+    public long replay(Consumer<LogRecord> consumer) throws IOException {
+        long truncated = 0;
+        for (Path logPath : List.of(sealedPath, path)) {
+            if (Files.notExists(logPath)) {
+                continue;
+            }
+            RecordFormat logFormat = RecordFormat.detect(logPath, recordFormat);
+            long validLength;
+            try (InputStream in = new BufferedInputStream(Files.newInputStream(logPath))) {
+                validLength = logFormat.readLog(in, consumer);
+            }
+            long size = Files.size(logPath);
+            if (validLength < size) {
+                try (FileChannel log = FileChannel.open(logPath, StandardOpenOption.WRITE)) {
+                    log.truncate(validLength);
+                    log.force(true);
+                }
+                truncated += size - validLength;
+                if (logPath.equals(path) && validLength == 0) {
+                    synchronized (this) {
+                        writeHeader(channel);
+                    }
+                }
+            }
+        }
+        return truncated;
+    }
+
+    /**
+     * Closes the log and deletes it together with the sealed log, once their records are part of a durable snapshot.
+     */
+    public synchronized void delete() throws IOException {
+        close();
+        dropSealed();
+        Files.deleteIfExists(path);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel.isOpen()) {
+            channel.force(false);
+            channel.close();
+            groupCommit.markSynced();
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package org.my.manager.storage;
+
+import org.my.task.Task;
+import org.my.util.TaskStringifier;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+/**
+ * Line per record format of {@link TaskStringifier}. Slots are padded with record separators
+ * before the line separator, which the parser drops as trailing empty fields.
+ * <p>
+ * Every line starts with the CRC32C of its text, as 8 hex digits and a record separator. Files start with
+ * {@link #CRC_MARK CRC_MARK}, files without it were written before checksums and are read as they are.
+ * A line without a line separator at the end of a file was torn by a crash and is not read.
+ */
+public final class TextRecordFormat implements RecordFormat {
+    public static final String NAME = "text";
+    static final TextRecordFormat INSTANCE = new TextRecordFormat(true);
+    static final TextRecordFormat LEGACY = new TextRecordFormat(false);
+    static final byte[] CRC_MARK = ("crc" + TaskStringifier.RECORD_SEPARATOR).getBytes(StandardCharsets.UTF_8);
+    private static final String UPSERT_MARK = "U";
+    private static final String TOMBSTONE_MARK = "D";
+    private static final int CRC_DIGITS = 8;
+    private static final HexFormat HEX = HexFormat.of();
+    private static final byte PADDING = TaskStringifier.RECORD_SEPARATOR.getBytes(StandardCharsets.UTF_8)[0];
+    private static final byte[] LINE_END = TaskStringifier.LINE_SEPARATOR.getBytes(StandardCharsets.UTF_8);
+    private static final byte[] LEGACY_HEADER = TaskStringifier.BACKUP_HEADER.getBytes(StandardCharsets.UTF_8);
+    private static final byte[] HEADER = concat(CRC_MARK, LEGACY_HEADER);
+    private static final byte[] LOG_HEADER = ("crc" + TaskStringifier.RECORD_SEPARATOR + "log"
+            + TaskStringifier.LINE_SEPARATOR).getBytes(StandardCharsets.UTF_8);
+
+    private final TaskStringifier taskStringifier = new TaskStringifier();
+    private final boolean checksummed;
+
+    private TextRecordFormat(boolean checksummed) {
+        this.checksummed = checksummed;
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public byte[] header() {
+        return checksummed ? HEADER.clone() : LEGACY_HEADER.clone();
+    }
+
+    @Override
+    public byte[] logHeader() {
+        return checksummed ? LOG_HEADER.clone() : new byte[0];
+    }
+
+    @Override
+    public byte[] encode(Task task) {
+        String line = taskStringifier.stringify(task);
+        return line(line.substring(0, line.length() - TaskStringifier.LINE_SEPARATOR.length()));
+    }
+
+    @Override
+    public ByteBuffer toSlot(byte[] record, int slotLength) {
+        byte[] slot = new byte[slotLength];
+        int body = record.length - LINE_END.length;
+        System.arraycopy(record, 0, slot, 0, body);
+        Arrays.fill(slot, body, slotLength - LINE_END.length, PADDING);
+        System.arraycopy(LINE_END, 0, slot, slotLength - LINE_END.length, LINE_END.length);
+        return ByteBuffer.wrap(slot);
+    }
+
+    @Override
+    public ByteBuffer blankSlot(int slotLength) {
+        return toSlot(LINE_END, slotLength);
+    }
+
+    @Override
+    public byte[] encode(LogRecord record) {
+        return line(switch (record.operation()) {
+            case UPSERT -> {
+                String task = taskStringifier.stringify(record.task());
+                yield UPSERT_MARK + TaskStringifier.RECORD_SEPARATOR
+                        + task.substring(0, task.length() - TaskStringifier.LINE_SEPARATOR.length());
+            }
+            case TOMBSTONE -> TOMBSTONE_MARK + TaskStringifier.RECORD_SEPARATOR + record.id();
+        });
+    }
+
+    /**
+     * @return the text prefixed with its checksum and followed by the line separator
+     */
+    private byte[] line(String text) {
+        byte[] body = text.getBytes(StandardCharsets.UTF_8);
+        if (!checksummed) {
+            return concat(body, LINE_END);
+        }
+        byte[] crc = HEX.toHexDigits(checksum(body, 0, body.length)).getBytes(StandardCharsets.US_ASCII);
+        byte[] line = new byte[CRC_DIGITS + 1 + body.length + LINE_END.length];
+        System.arraycopy(crc, 0, line, 0, CRC_DIGITS);
+        line[CRC_DIGITS] = PADDING;
+        System.arraycopy(body, 0, line, CRC_DIGITS + 1, body.length);
+        System.arraycopy(LINE_END, 0, line, line.length - LINE_END.length, LINE_END.length);
+        return line;
+    }
+
+    @Override
+    public long[] split(FileChannel channel, int parts) throws IOException {
+        long size = channel.size();
+        long start = nextLine(channel, 0, size);
+        long[] bounds = new long[parts + 1];
+        bounds[0] = start;
+        for (int i = 1; i < parts; i++) {
+            long target = start + (size - start) * i / parts;
+            bounds[i] = Math.max(bounds[i - 1], nextLine(channel, target - 1, size));
+        }
+        bounds[parts] = size;
+        return bounds;
+    }
+
+    @Override
+    public long read(ByteBuffer chunk, long offset, RecordVisitor visitor) throws IOException {
+        byte[] data = chunk.array();
+        int base = chunk.arrayOffset() + chunk.position();
+        int end = chunk.arrayOffset() + chunk.limit();
+        int from = base;
+        for (int i = from; i < end; i++) {
+            if (data[i] != '\n') {
+                continue;
+            }
+            long lineOffset = offset + from - base;
+            String line = text(data, from, i + 1);
+            if (line == null) {
+                visitor.corrupt(lineOffset, i + 1 - from);
+            } else if (TaskStringifier.isPadding(line)) {
+                visitor.visit(lineOffset, i + 1 - from, null);
+            } else {
+                visitor.visit(lineOffset, i + 1 - from, taskStringifier.unstringify(line));
+            }
+            from = i + 1;
+        }
+        return offset + from - base;
+    }
+
+    /**
+     * @return position after the first line separator at or after the given position, or the size of the file
+     */
+    private static long nextLine(FileChannel channel, long position, long size) throws IOException {
+        ByteBuffer window = ByteBuffer.allocate(8192);
+        while (position < size) {
+            window.clear();
+            int read = channel.read(window, position);
+            if (read < 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (window.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    /**
+     * Replays the log up to the first line which is torn or fails its checksum, later lines are not trusted.
+     */
+    @Override
+    public long readLog(InputStream in, Consumer<LogRecord> consumer) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+        byte[] chunk = new byte[8192];
+        long offset = 0;
+        boolean header = checksummed;
+        int read;
+        while ((read = in.read(chunk)) != -1) {
+            int start = 0;
+            for (int i = 0; i < read; i++) {
+                if (chunk[i] != '\n') {
+                    continue;
+                }
+                line.write(chunk, start, i + 1 - start);
+                start = i + 1;
+                if (header) {
+                    header = false;
+                } else {
+                    String text = text(line.toByteArray(), 0, line.size());
+                    if (text == null) {
+                        return offset;
+                    }
+                    if (!text.isEmpty()) {
+                        consumer.accept(decodeLogLine(text));
+                    }
+                }
+                offset += line.size();
+                line.reset();
+            }
+            line.write(chunk, start, read - start);
+        }
+        return offset;
+    }
+
+    private LogRecord decodeLogLine(String line) {
+        String mark = line.substring(0, line.indexOf(TaskStringifier.RECORD_SEPARATOR));
+        String payload = line.substring(mark.length() + TaskStringifier.RECORD_SEPARATOR.length());
+        return switch (mark) {
+            case UPSERT_MARK -> LogRecord.upsert(taskStringifier.unstringify(payload));
+            case TOMBSTONE_MARK -> LogRecord.tombstone(payload);
+            default -> throw new IllegalStateException("unknown log record: " + mark);
+        };
+    }
+
+    /**
+     * @return text of the line without its checksum and line separator, empty for padding,
+     * or null if the checksum does not match
+     */
+    private String text(byte[] data, int from, int to) {
+        int end = to;
+        if (end > from && data[end - 1] == '\n') {
+            end--;
+        }
+        if (end > from && data[end - 1] == '\r') {
+            end--;
+        }
+        if (!checksummed) {
+            return new String(data, from, end - from, StandardCharsets.UTF_8);
+        }
+        int body = end;
+        while (body > from && data[body - 1] == PADDING) {
+            body--;
+        }
+        if (body == from) {
+            return "";
+        }
+        if (body - from < CRC_DIGITS + 1 || data[from + CRC_DIGITS] != PADDING) {
+            return null;
+        }
+        int crc;
+        try {
+            crc = HexFormat.fromHexDigits(new String(data, from, CRC_DIGITS, StandardCharsets.US_ASCII));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (crc != checksum(data, from + CRC_DIGITS + 1, body)) {
+            return null;
+        }
+        return new String(data, from + CRC_DIGITS + 1, end - from - CRC_DIGITS - 1, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Checksum of the text without trailing record separators, so padding a line does not change it.
+     */
+    private static int checksum(byte[] data, int from, int to) {
+        while (to > from && data[to - 1] == PADDING) {
+            to--;
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(data, from, to - from);
+        return (int) crc.getValue();
+    }
+
+    private static byte[] concat(byte[] first, byte[] second) {
+        byte[] result = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
+    }
+}
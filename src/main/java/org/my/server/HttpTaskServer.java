@@ -5,6 +5,7 @@ import org.my.manager.TaskManager;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.util.concurrent.Executor;
 
 public class HttpTaskServer {
     private static final int PORT = 8080;
@@ -13,11 +14,24 @@ public class HttpTaskServer {
     public static final String EPIC_PATH = "/epics";
     public static final String HISTORY_PATH = "/history";
     public static final String PRIORITY_PATH = "/prioritized";
+    public static final String BACKUP_PATH = "/backup";
+    public static final String SEARCH_PATH = "/search";
     private HttpServer httpServer;
     private final TaskManager taskManager;
+    private final Executor executor;
 
     public HttpTaskServer(TaskManager taskManager) {
+        this(taskManager, null);
+    }
+
+    /**
+     * @param executor - runs the exchanges, exchanges run on the server's thread if null;
+     *                 only thread safe managers such as {@link org.my.manager.ConcurrentTaskManager} may be served
+     *                 by many threads
+     */
+    public HttpTaskServer(TaskManager taskManager, Executor executor) {
         this.taskManager = taskManager;
+        this.executor = executor;
     }
 
     public void start() {
@@ -36,11 +50,14 @@ public class HttpTaskServer {
         this.httpServer.createContext(EPIC_PATH, TaskHandlers.of(EPIC_PATH, taskManager));
         this.httpServer.createContext(HISTORY_PATH, TaskHandlers.of(HISTORY_PATH, taskManager));
         this.httpServer.createContext(PRIORITY_PATH, TaskHandlers.of(PRIORITY_PATH, taskManager));
+        this.httpServer.createContext(BACKUP_PATH, TaskHandlers.of(BACKUP_PATH, taskManager));
+        this.httpServer.createContext(SEARCH_PATH, TaskHandlers.of(SEARCH_PATH, taskManager));
     }
 
     private void setServer() {
         try {
             this.httpServer = HttpServer.create(new InetSocketAddress(PORT), 0);
+            this.httpServer.setExecutor(executor);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
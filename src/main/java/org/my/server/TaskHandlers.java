@@ -2,6 +2,7 @@ package org.my.server;
 
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
+import org.my.manager.FileBackedTaskManager;
 import org.my.manager.TaskManager;
 import org.my.server.message.Decoder;
 import org.my.server.message.Encoder;
@@ -9,11 +10,19 @@ import org.my.server.message.Message;
 import org.my.task.Epic;
 import org.my.task.Subtask;
 import org.my.task.Task;
+import org.my.util.TaskStringifier;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 public class TaskHandlers {
@@ -30,6 +39,8 @@ public class TaskHandlers {
             case HttpTaskServer.EPIC_PATH -> new EpicHandler(taskManager);
             case HttpTaskServer.HISTORY_PATH -> new HistoryHandler(taskManager);
             case HttpTaskServer.PRIORITY_PATH -> new PriorityHandler(taskManager);
+            case HttpTaskServer.BACKUP_PATH -> new BackupHandler(taskManager);
+            case HttpTaskServer.SEARCH_PATH -> new SearchHandler(taskManager);
             case null, default -> null;
         };
     }
@@ -313,6 +324,10 @@ public class TaskHandlers {
         }
     }
 
+    /**
+     * Responds with all prioritized tasks, with {@code ?from=...&limit=...} with the next tasks from a time
+     * and with {@code ?from=...&to=...} with the tasks of a time range. Times are ISO local date-times.
+     */
     private record PriorityHandler(TaskManager taskManager) implements HttpHandler {
 
         @Override
@@ -320,13 +335,125 @@ public class TaskHandlers {
             String method = exchange.getRequestMethod();
             Encoder<Task> encoder = new Encoder<>();
             if (method.equals("GET")) {
+                List<Task> prioritized;
+                try {
+                    prioritized = prioritized(queryParameters(exchange));
+                } catch (DateTimeException | IllegalArgumentException e) {
+                    exchange.sendResponseHeaders(NOT_ACCEPTABLE, 0);
+                    try (OutputStream outputStream = exchange.getResponseBody()) {
+                        outputStream.write(0);
+                    }
+                    return;
+                }
+                exchange.sendResponseHeaders(SUCCESS, 0);
+                Message<Task> message = new Message<>(prioritized);
+                String payload = encoder.encode(message);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(payload.getBytes(StandardCharsets.UTF_8));
+                }
+            }
+        }
+
+        private List<Task> prioritized(Map<String, String> parameters) {
+            String from = parameters.get("from");
+            if (from == null) {
+                return taskManager.getPrioritizedTasks();
+            }
+            LocalDateTime start = LocalDateTime.parse(from, TaskStringifier.TASK_TIME_FORMATTER);
+            String to = parameters.get("to");
+            if (to != null) {
+                return taskManager.getPrioritizedTasks(start,
+                        LocalDateTime.parse(to, TaskStringifier.TASK_TIME_FORMATTER));
+            }
+            return taskManager.getPrioritizedTasks(start,
+                    Integer.parseInt(parameters.getOrDefault("limit", String.valueOf(Integer.MAX_VALUE))));
+        }
+    }
+
+    /**
+     * Responds with the tasks matching {@code ?q=...}, at most {@code limit} of them, see
+     * {@link TaskManager#search(String, int)}.
+     */
+    private record SearchHandler(TaskManager taskManager) implements HttpHandler {
+        private static final int DEFAULT_LIMIT = 100;
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            String method = exchange.getRequestMethod();
+            Encoder<Task> encoder = new Encoder<>();
+            if (method.equals("GET")) {
+                List<Task> found;
+                try {
+                    found = search(queryParameters(exchange));
+                } catch (IllegalArgumentException e) {
+                    exchange.sendResponseHeaders(NOT_ACCEPTABLE, 0);
+                    try (OutputStream outputStream = exchange.getResponseBody()) {
+                        outputStream.write(0);
+                    }
+                    return;
+                }
                 exchange.sendResponseHeaders(SUCCESS, 0);
-                Message<Task> message = new Message<>(taskManager.getPrioritizedTasks());
+                Message<Task> message = new Message<>(found);
                 String payload = encoder.encode(message);
                 try (OutputStream out = exchange.getResponseBody()) {
                     out.write(payload.getBytes(StandardCharsets.UTF_8));
                 }
             }
         }
+
+        private List<Task> search(Map<String, String> parameters) {
+            String query = parameters.get("q");
+            if (query == null || query.isBlank()) {
+                throw new IllegalArgumentException("query is missing");
+            }
+            return taskManager.search(query,
+                    Integer.parseInt(parameters.getOrDefault("limit", String.valueOf(DEFAULT_LIMIT))));
+        }
+    }
+
+    private static Map<String, String> queryParameters(HttpExchange exchange) {
+        String query = exchange.getRequestURI().getQuery();
+        Map<String, String> parameters = new HashMap<>();
+        if (query == null || query.isEmpty()) {
+            return parameters;
+        }
+        for (String parameter : query.split("&")) {
+            int separator = parameter.indexOf('=');
+            if (separator > 0) {
+                parameters.put(URLDecoder.decode(parameter.substring(0, separator), StandardCharsets.UTF_8),
+                        URLDecoder.decode(parameter.substring(separator + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return parameters;
+    }
+
+    /**
+     * Starts a backup and responds with its directory without waiting for the backup to be written.
+     */
+    private record BackupHandler(TaskManager taskManager) implements HttpHandler {
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            String method = exchange.getRequestMethod();
+            if (method.equals("POST")) {
+                if (!(taskManager instanceof FileBackedTaskManager fileBackedTaskManager)) {
+                    exchange.sendResponseHeaders(NOT_ACCEPTABLE, 0);
+                    try (OutputStream outputStream = exchange.getResponseBody()) {
+                        outputStream.write(0);
+                    }
+                    return;
+                }
+                Path backupDir = fileBackedTaskManager.newBackupDir();
+                fileBackedTaskManager.backup(backupDir).whenComplete((dir, e) -> {
+                    if (e != null) {
+                        e.printStackTrace();
+                    }
+                });
+                exchange.sendResponseHeaders(SUCCESS_VOID, 0);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(backupDir.toString().getBytes(StandardCharsets.UTF_8));
+                }
+            }
+        }
     }
 }
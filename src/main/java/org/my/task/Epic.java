@@ -2,25 +2,91 @@ package org.my.task;
 
 import java.time.Duration;
 import java.time.LocalDateTime;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import java.util.TreeMap;
 import java.util.stream.Collectors;
 
 public class Epic extends Task {
-    private List<Subtask> subtasks;
+    private SubtaskList subtasks;
     private LocalDateTime endTime;
+    private transient Rollup rollup;
 
     public Epic(String title, String description, String id) {
         super(title, description, id, null, null);
-        this.subtasks = new ArrayList<>();
+        this.subtasks = new SubtaskList();
     }
 
+    /**
+     * Subtasks are kept by id, so {@code contains} and {@code remove} of a subtask don't scan the list.
+     */
     public List<Subtask> getSubtasks() {
         return subtasks;
     }
 
+    /**
+     * Adds the subtask and rolls its status and time into the epic's.
+     *
+     * @throws IllegalArgumentException if the epic has a subtask with the id, it is changed through
+     *                                  {@link #replaceSubtask(Subtask, Subtask) replaceSubtask}
+     */
+    public void addSubtask(Subtask subtask) {
+        Rollup rollup = rollup();
+        subtasks.add(subtask);
+        rollup.add(subtask);
+        applyRollup();
+    }
+
+    /**
+     * Removes the subtask and rolls it out of the epic's status and time.
+     *
+     * @return false if the epic has no such subtask
+     */
+    public boolean removeSubtask(Subtask subtask) {
+        Rollup rollup = rollup();
+        if (!subtasks.remove(subtask)) {
+            return false;
+        }
+        rollup.remove(subtask);
+        applyRollup();
+        return true;
+    }
+
+    /**
+     * Replaces the old version of the subtask with the new one, which is moved to the end of the subtasks.
+     *
+     * @return false if the epic has no old version of the subtask, or another subtask has the new one's id
+     */
+    public boolean replaceSubtask(Subtask old, Subtask subtask) {
+        Rollup rollup = rollup();
+        if (!subtask.getId().equals(old.getId()) && subtasks.containsId(subtask.getId())
+                || !subtasks.remove(old)) {
+            return false;
+        }
+        subtasks.add(subtask);
+        rollup.remove(old);
+        rollup.add(subtask);
+        applyRollup();
+        return true;
+    }
+
+    /**
+     * Resolves the epic's status and time from all of its subtasks, after the subtasks were changed directly.
+     */
     public void resolveEpicData() {
+        rollup = null;
+        applyRollup();
+    }
+
+    private Rollup rollup() {
+        if (rollup == null) {
+            rollup = new Rollup();
+            subtasks.forEach(rollup::add);
+        }
+        return rollup;
+    }
+
+    private void applyRollup() {
         if (subtasks.isEmpty()) {
             this.setStatus(Status.NEW);
             this.setDuration(null);
@@ -28,44 +94,53 @@ public class Epic extends Task {
             this.setStartTime(null);
             return;
         }
-        Subtask sub = subtasks.getFirst();
         if (subtasks.size() == 1) {
+            Subtask sub = subtasks.getFirst();
             this.setStatus(sub.getStatus());
             this.setEndTime(sub.getEndTime());
             this.setStartTime(sub.getStartTime());
             this.setDuration(sub.getDuration());
             return;
         }
-        LocalDateTime start = LocalDateTime.MAX;
-        LocalDateTime end = LocalDateTime.MIN;
-        Status status = sub.getStatus();
-        for (Subtask subtask : subtasks) {
-            if (subtask.getStartTime().isBefore(start)) {
-                start = subtask.getStartTime();
-            }
-            if (subtask.getEndTime().isAfter(end)) {
-                end = subtask.getEndTime();
-            }
-            if (!subtask.getStatus().equals(status)) {
-                status = Status.IN_PROGRESS;
-            }
-        }
-        this.setDuration(Duration.between(start, end));
+        Rollup rollup = rollup();
+        LocalDateTime start = rollup.starts.isEmpty() ? null : rollup.starts.firstKey();
+        LocalDateTime end = rollup.ends.isEmpty() ? null : rollup.ends.lastKey();
+        this.setDuration(start == null || end == null ? null : Duration.between(start, end));
         this.setStartTime(start);
         this.setEndTime(end);
-        this.setStatus(status);
+        this.setStatus(rollup.status(subtasks.size()));
     }
 
-
     @Override
     public LocalDateTime getEndTime() {
         return endTime;
     }
 
     public void setEndTime(LocalDateTime endTime) {
+        checkMutable();
         this.endTime = endTime;
     }
 
+    /**
+     * Subtasks of a frozen epic can't be added or removed either.
+     */
+    @Override
+    public void freeze() {
+        subtasks.freeze();
+        super.freeze();
+    }
+
+    /**
+     * @return frozen copy of the epic sharing its subtasks, which are copied once the epic changes them
+     */
+    public Epic snapshot() {
+        Epic snapshot = (Epic) super.clone();
+        snapshot.subtasks = subtasks.frozenCopy();
+        snapshot.rollup = null;
+        snapshot.freeze();
+        return snapshot;
+    }
+
     @Override
     public String toString() {
         return "task.Epic{" +
@@ -73,10 +148,16 @@ public class Epic extends Task {
                 "} " + super.toString();
     }
 
+    /**
+     * @return mutable copy of the epic, frozen subtasks are shared and the others are cloned
+     */
     @Override
     public Task clone() {
         Epic clone = (Epic) super.clone();
-        clone.subtasks = subtasks.parallelStream().map(x -> (Subtask) x.clone()).collect(Collectors.toList());
+        clone.subtasks = subtasks.stream()
+                .map(x -> x.isFrozen() ? x : (Subtask) x.clone())
+                .collect(Collectors.toCollection(SubtaskList::new));
+        clone.rollup = null;
         return clone;
     }
 
@@ -88,8 +169,52 @@ public class Epic extends Task {
         return Objects.equals(getSubtasks(), epic.getSubtasks());
     }
 
+    /**
+     * Equal epics have equal fields of a task, so subtasks are left out of the hash.
+     */
     @Override
     public int hashCode() {
-        return Objects.hash(super.hashCode(), getSubtasks());
+        return super.hashCode();
+    }
+
+    /**
+     * Counts of the subtasks' statuses and their start and end times ordered with their counts,
+     * so the epic's status and time follow a change of one subtask in O(log n).
+     * Subtasks are expected not to change while they belong to the epic.
+     */
+    private static final class Rollup {
+        private final int[] statuses = new int[Status.values().length];
+        private final TreeMap<LocalDateTime, Integer> starts = new TreeMap<>();
+        private final TreeMap<LocalDateTime, Integer> ends = new TreeMap<>();
+
+        private void add(Subtask subtask) {
+            statuses[subtask.getStatus().ordinal()]++;
+            count(starts, subtask.getStartTime(), 1);
+            count(ends, subtask.getEndTime(), 1);
+        }
+
+        private void remove(Subtask subtask) {
+            statuses[subtask.getStatus().ordinal()]--;
+            count(starts, subtask.getStartTime(), -1);
+            count(ends, subtask.getEndTime(), -1);
+        }
+
+        /**
+         * @return status shared by all subtasks, in progress if they differ
+         */
+        private Status status(int size) {
+            for (Status status : Status.values()) {
+                if (statuses[status.ordinal()] == size) {
+                    return status;
+                }
+            }
+            return Status.IN_PROGRESS;
+        }
+
+        private static void count(TreeMap<LocalDateTime, Integer> times, LocalDateTime time, int delta) {
+            if (time != null) {
+                times.merge(time, delta, (x, y) -> x + y == 0 ? null : x + y);
+            }
+        }
     }
 }
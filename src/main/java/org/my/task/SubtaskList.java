@@ -0,0 +1,232 @@
+package org.my.task;
+
+import java.util.*;
+
+/**
+ * Subtasks of an epic in insertion order, keyed by id, so a subtask is found and removed in O(1).
+ * Subtasks are unique by id, a subtask whose id is already in the list is rejected rather than replaced.
+ * Iteration, equality and the first and last subtask read the map directly,
+ * positional access walks it from the nearer end.
+ * <p>
+ * A {@link #frozenCopy() frozen copy} shares the map, which the list copies before its next change,
+ * so taking copies of an unchanged list costs nothing.
+ */
+final class SubtaskList extends AbstractList<Subtask> {
+    private LinkedHashMap<String, Subtask> subtasks;
+    // the map is read by a frozen copy
+    private boolean shared;
+    private boolean frozen;
+
+    SubtaskList() {
+        this.subtasks = new LinkedHashMap<>();
+    }
+
+    /**
+     * Rejects any further change of the list.
+     */
+    void freeze() {
+        frozen = true;
+    }
+
+    /**
+     * @return frozen list of the current subtasks sharing their map with this list
+     */
+    SubtaskList frozenCopy() {
+        if (frozen) {
+            return this;
+        }
+        SubtaskList copy = new SubtaskList();
+        copy.subtasks = subtasks;
+        copy.frozen = true;
+        shared = true;
+        return copy;
+    }
+
+    @Override
+    public Subtask get(int index) {
+        Objects.checkIndex(index, subtasks.size());
+        boolean fromEnd = index >= subtasks.size() / 2;
+        Iterator<Subtask> iterator = fromEnd
+                ? subtasks.sequencedValues().reversed().iterator()
+                : subtasks.values().iterator();
+        for (int i = fromEnd ? subtasks.size() - 1 - index : index; i > 0; i--) {
+            iterator.next();
+        }
+        return iterator.next();
+    }
+
+    @Override
+    public Subtask getFirst() {
+        return subtasks.sequencedValues().getFirst();
+    }
+
+    @Override
+    public Subtask getLast() {
+        return subtasks.sequencedValues().getLast();
+    }
+
+    @Override
+    public int size() {
+        return subtasks.size();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof Subtask subtask && matches(subtasks.get(subtask.getId()), subtask);
+    }
+
+    boolean containsId(String id) {
+        return subtasks.containsKey(id);
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        if (!contains(o)) {
+            return -1;
+        }
+        int index = 0;
+        for (String id : subtasks.keySet()) {
+            if (id.equals(((Subtask) o).getId())) {
+                break;
+            }
+            index++;
+        }
+        return index;
+    }
+
+    @Override
+    public int lastIndexOf(Object o) {
+        return indexOf(o);
+    }
+
+    /**
+     * @throws IllegalArgumentException if a subtask with the id is already in the list
+     */
+    @Override
+    public boolean add(Subtask subtask) {
+        if (subtasks.containsKey(subtask.getId())) {
+            checkMutable();
+            throw new IllegalArgumentException("subtask " + subtask.getId() + " is already in the list");
+        }
+        writable().put(subtask.getId(), subtask);
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        checkMutable();
+        if (!contains(o)) {
+            return false;
+        }
+        writable().remove(((Subtask) o).getId());
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        boolean modified = false;
+        for (Object o : c) {
+            modified |= remove(o);
+        }
+        return modified;
+    }
+
+    @Override
+    public void clear() {
+        checkMutable();
+        subtasks = new LinkedHashMap<>();
+        shared = false;
+        modCount++;
+    }
+
+    @Override
+    public Iterator<Subtask> iterator() {
+        LinkedHashMap<String, Subtask> iterated = subtasks;
+        Iterator<Subtask> iterator = iterated.values().iterator();
+        return new Iterator<>() {
+            private Subtask last;
+
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public Subtask next() {
+                last = iterator.next();
+                return last;
+            }
+
+            @Override
+            public void remove() {
+                if (last == null) {
+                    throw new IllegalStateException();
+                }
+                LinkedHashMap<String, Subtask> target = writable();
+                if (target == iterated) {
+                    iterator.remove();
+                } else {
+                    // the iterated map was copied for the change, it is left as it is
+                    target.remove(last.getId());
+                }
+                last = null;
+                modCount++;
+            }
+        };
+    }
+
+    /**
+     * Iterates a copy of the subtasks, which can't be changed through the iterator.
+     */
+    @Override
+    public ListIterator<Subtask> listIterator(int index) {
+        return List.copyOf(subtasks.values()).listIterator(index);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == this || o instanceof SubtaskList list && list.subtasks == subtasks) {
+            return true;
+        }
+        if (!(o instanceof List<?> list) || list.size() != subtasks.size()) {
+            return false;
+        }
+        Iterator<?> other = list.iterator();
+        for (Subtask subtask : subtasks.values()) {
+            if (!Objects.equals(subtask, other.next())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int hashCode = 1;
+        for (Subtask subtask : subtasks.values()) {
+            hashCode = 31 * hashCode + Objects.hashCode(subtask);
+        }
+        return hashCode;
+    }
+
+    private static boolean matches(Subtask stored, Subtask subtask) {
+        return stored != null && (stored == subtask || stored.equals(subtask));
+    }
+
+    private LinkedHashMap<String, Subtask> writable() {
+        checkMutable();
+        if (shared) {
+            subtasks = new LinkedHashMap<>(subtasks);
+            shared = false;
+        }
+        return subtasks;
+    }
+
+    private void checkMutable() {
+        if (frozen) {
+            throw new UnsupportedOperationException("subtasks of a frozen epic can't be changed");
+        }
+    }
+}
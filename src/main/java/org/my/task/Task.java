@@ -4,6 +4,11 @@ import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.Objects;
 
+/**
+ * A task is mutable until it is {@link #freeze() frozen}. Frozen tasks are shared between readers,
+ * setters of a frozen task throw {@link UnsupportedOperationException} and {@link #clone()} gives
+ * a mutable copy to edit.
+ */
 public class Task implements Cloneable {
 
     private String title;
@@ -12,6 +17,7 @@ public class Task implements Cloneable {
     private Status status;
     private Duration duration;
     private LocalDateTime startTime;
+    private transient boolean frozen;
 
     public Task(String title, String description, String id, Duration duration, LocalDateTime startTime) {
         this.title = title;
@@ -39,14 +45,17 @@ public class Task implements Cloneable {
     }
 
     public void setTitle(String title) {
+        checkMutable();
         this.title = title;
     }
 
     public void setDescription(String description) {
+        checkMutable();
         this.description = description;
     }
 
     public void setStatus(Status status) {
+        checkMutable();
         this.status = status;
     }
 
@@ -66,10 +75,12 @@ public class Task implements Cloneable {
     }
 
     public void setDuration(Duration duration) {
+        checkMutable();
         this.duration = duration;
     }
 
     public void setStartTime(LocalDateTime startTime) {
+        checkMutable();
         this.startTime = startTime;
     }
 
@@ -95,10 +106,15 @@ public class Task implements Cloneable {
                 '}';
     }
 
+    /**
+     * @return mutable copy of the task
+     */
     @Override
     public Task clone() {
         try {
-            return (Task) super.clone();
+            Task clone = (Task) super.clone();
+            clone.frozen = false;
+            return clone;
         } catch (CloneNotSupportedException e) {
             throw new AssertionError();
         }
@@ -106,6 +122,24 @@ public class Task implements Cloneable {
 
 
     public void setId(String s) {
+        checkMutable();
         this.id = s;
     }
+
+    /**
+     * Makes the task read only for good.
+     */
+    public void freeze() {
+        frozen = true;
+    }
+
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    protected void checkMutable() {
+        if (frozen) {
+            throw new UnsupportedOperationException("task " + id + " is read only, edit a clone");
+        }
+    }
 }
@@ -0,0 +1,205 @@
+package org.my.util;
+
+import org.my.task.Epic;
+import org.my.task.Status;
+import org.my.task.Subtask;
+import org.my.task.Task;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Compact binary form of a task, an alternative to {@link TaskStringifier}.
+ * <p>
+ * Layout: type byte, status byte, id, title, description, start time, duration and, for subtasks, epic id.
+ * Numbers are unsigned LEB128 varints, signed ones zigzag encoded. Strings are UTF-8 prefixed with their length + 1,
+ * 0 stands for null. Ids are prefixed with the number of leading {@link IdGenerator#RANGE lowest id symbols},
+ * which makes generated ids a couple of bytes long. Start time is stored in epoch minutes and duration in seconds,
+ * a flag bit marks values with a finer remainder which then follows.
+ * Bytes after the last field are ignored, so a record may be padded.
+ */
+public class BinaryTaskCodec {
+    public static final byte BLANK = 0;
+    private static final byte TASK = 1;
+    private static final byte EPIC = 2;
+    private static final byte SUBTASK = 3;
+    private static final Status[] STATUSES = Status.values();
+    private static final char ID_PAD = IdGenerator.RANGE[0];
+
+    public byte[] encode(Task task) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(128);
+        byte type = switch (task) {
+            case Subtask s -> SUBTASK;
+            case Epic e -> EPIC;
+            case Task t -> TASK;
+        };
+        out.write(type);
+        out.write(task.getStatus().ordinal());
+        writeId(out, task.getId());
+        writeString(out, task.getTitle());
+        writeString(out, task.getDescription());
+        writeTime(out, task.getStartTime());
+        writeDuration(out, task.getDuration());
+        if (type == SUBTASK) {
+            writeId(out, ((Subtask) task).getEpicId());
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Decodes the task at the buffer's position.
+     *
+     * @return decoded task or null if the record is {@link #BLANK blank}
+     */
+    public Task decode(ByteBuffer in) {
+        byte type = in.get();
+        if (type == BLANK) {
+            return null;
+        }
+        Status status = STATUSES[in.get()];
+        String id = readId(in);
+        String title = readString(in);
+        String description = readString(in);
+        LocalDateTime startTime = readTime(in);
+        Duration duration = readDuration(in);
+        Task task = switch (type) {
+            case TASK -> new Task(title, description, id, duration, startTime);
+            case EPIC -> {
+                Epic epic = new Epic(title, description, id);
+                epic.setStartTime(startTime);
+                epic.setDuration(duration);
+                yield epic;
+            }
+            case SUBTASK -> new Subtask(title, description, id, duration, startTime, readId(in));
+            default -> throw new IllegalArgumentException("unknown task type " + type);
+        };
+        task.setStatus(status);
+        return task;
+    }
+
+    public static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    public static long readVarLong(ByteBuffer in) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeString(ByteArrayOutputStream out, String value) {
+        if (value == null) {
+            writeVarLong(out, 0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, bytes.length + 1L);
+        out.writeBytes(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = (int) readVarLong(in) - 1;
+        if (length < 0) {
+            return null;
+        }
+        if (!in.hasArray()) {
+            byte[] bytes = new byte[length];
+            in.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+        String value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return value;
+    }
+
+    private static void writeId(ByteArrayOutputStream out, String id) {
+        int pad = 0;
+        if (id != null) {
+            while (pad < id.length() && id.charAt(pad) == ID_PAD) {
+                pad++;
+            }
+        }
+        writeVarLong(out, pad);
+        writeString(out, id == null ? null : id.substring(pad));
+    }
+
+    private static String readId(ByteBuffer in) {
+        int pad = (int) readVarLong(in);
+        String rest = readString(in);
+        if (rest == null) {
+            return null;
+        }
+        return String.valueOf(ID_PAD).repeat(pad) + rest;
+    }
+
+    private static void writeTime(ByteArrayOutputStream out, LocalDateTime time) {
+        if (time == null) {
+            writeVarLong(out, 0);
+            return;
+        }
+        long seconds = time.toEpochSecond(ZoneOffset.UTC);
+        long minutes = Math.floorDiv(seconds, 60);
+        long remainder = Math.floorMod(seconds, 60) * 1_000_000_000L + time.getNano();
+        writeVarLong(out, (zigzag(minutes) << 1 | (remainder == 0 ? 0 : 1)) + 1);
+        if (remainder != 0) {
+            writeVarLong(out, remainder);
+        }
+    }
+
+    private static LocalDateTime readTime(ByteBuffer in) {
+        long tag = readVarLong(in);
+        if (tag == 0) {
+            return null;
+        }
+        tag--;
+        long minutes = unzigzag(tag >>> 1);
+        long remainder = (tag & 1) == 0 ? 0 : readVarLong(in);
+        return LocalDateTime.ofEpochSecond(minutes * 60 + remainder / 1_000_000_000L,
+                (int) (remainder % 1_000_000_000L), ZoneOffset.UTC);
+    }
+
+    private static void writeDuration(ByteArrayOutputStream out, Duration duration) {
+        if (duration == null) {
+            writeVarLong(out, 0);
+            return;
+        }
+        int nanos = duration.getNano();
+        writeVarLong(out, (zigzag(duration.getSeconds()) << 1 | (nanos == 0 ? 0 : 1)) + 1);
+        if (nanos != 0) {
+            writeVarLong(out, nanos);
+        }
+    }
+
+    private static Duration readDuration(ByteBuffer in) {
+        long tag = readVarLong(in);
+        if (tag == 0) {
+            return null;
+        }
+        tag--;
+        long seconds = unzigzag(tag >>> 1);
+        long nanos = (tag & 1) == 0 ? 0 : readVarLong(in);
+        return Duration.ofSeconds(seconds, nanos);
+    }
+}
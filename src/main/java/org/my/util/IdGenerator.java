@@ -23,6 +23,29 @@ public class IdGenerator {
         return id;
     }
 
+    /**
+     * Moves the counter past the given id, so ids restored from a backup are not generated again.
+     * Ids of foreign shape or lower than the current counter value are ignored.
+     *
+     * @param id - id previously produced by a generator
+     */
+    public void advancePast(String id) {
+        if (id == null || id.length() != valueCounter.length) {
+            return;
+        }
+        char[] candidate = id.toCharArray();
+        for (char c : candidate) {
+            if (c < RANGE[0] || c >= RANGE[1]) {
+                return;
+            }
+        }
+        if (Arrays.compare(candidate, valueCounter) < 0) {
+            return;
+        }
+        System.arraycopy(candidate, 0, valueCounter, 0, candidate.length);
+        nextSymbol(RANGE[1] - RANGE[0] - 1);
+    }
+
     private void nextSymbol(int pos) {
         if (pos < 0) {
             idOverflow = true;
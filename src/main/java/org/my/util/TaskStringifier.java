@@ -33,6 +33,7 @@ public class TaskStringifier {
             //7
             .add("epic" + LINE_SEPARATOR)
             .toString();
+    public static final String HISTORY_HEADER = "id" + LINE_SEPARATOR;
 
     public String stringify(Task task) {
         TaskType type = switch (task) {
@@ -61,6 +62,13 @@ public class TaskStringifier {
         return sj.toString();
     }
 
+    /**
+     * @return true if the line is a blank slot left by a removed record.
+     */
+    public static boolean isPadding(String line) {
+        return line.chars().allMatch(c -> c == RECORD_SEPARATOR.charAt(0));
+    }
+
     public Task unstringify(String line) {
         String[] params = line.split(RECORD_SEPARATOR);
         Duration duration = params[5].equals("null") ? null : Duration.parse(params[5]);
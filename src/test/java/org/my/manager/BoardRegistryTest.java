@@ -0,0 +1,60 @@
+package org.my.manager;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.my.task.Task;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoardRegistryTest {
+
+    @Test
+    void boardsAreIsolatedAndEvictedLeastRecentlyUsedFirst(@TempDir Path dir) throws Exception {
+        Task first = new Task("first", "on board a", null, null, null);
+        Task second = new Task("second", "on board b", null, null, null);
+        try (BoardRegistry registry = BoardRegistry.open(dir, new Properties(), 2, Duration.ZERO)) {
+            try (BoardRegistry.Board a = registry.acquire("a")) {
+                assertTrue(a.manager().createTask(first));
+            }
+            try (BoardRegistry.Board b = registry.acquire("b")) {
+                assertTrue(b.manager().createTask(second));
+                assertEquals(List.of(second), b.manager().getAllTasks());
+            }
+            registry.acquire("a").close();
+            try (BoardRegistry.Board held = registry.acquire("b");
+                 BoardRegistry.Board c = registry.acquire("c")) {
+                assertEquals(List.of("b", "c"), registry.openBoards());
+                try (BoardRegistry.Board d = registry.acquire("d")) {
+                    assertEquals(List.of("b", "c", "d"), registry.openBoards());
+                    assertTrue(d.manager().getAllTasks().isEmpty());
+                }
+                assertEquals(List.of("b", "c"), registry.openBoards());
+            }
+            assertEquals(2, registry.openBoards().size());
+            try (BoardRegistry.Board a = registry.acquire("a")) {
+                assertEquals(List.of(first), a.manager().getAllTasks());
+            }
+            assertThrows(IllegalArgumentException.class, () -> registry.acquire("../a"));
+        }
+        assertTrue(Files.exists(dir.resolve("a").resolve("dump.csv")));
+        assertTrue(Files.exists(dir.resolve("b").resolve("history.csv")));
+    }
+
+    @Test
+    void idleBoardsAreClosed(@TempDir Path dir) throws Exception {
+        try (BoardRegistry registry = BoardRegistry.open(dir, new Properties(), 8, Duration.ofMillis(20))) {
+            BoardRegistry.Board busy = registry.acquire("busy");
+            registry.acquire("idle").close();
+            Thread.sleep(100);
+            registry.evictIdle();
+            assertEquals(List.of("busy"), registry.openBoards());
+            busy.close();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package org.my.manager;
+
+import org.junit.jupiter.api.Test;
+import org.my.task.Epic;
+import org.my.task.Status;
+import org.my.task.Subtask;
+import org.my.task.Task;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrentTaskManagerTest {
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    @Test
+    void concurrentWritersKeepEpicsConsistent() throws Exception {
+        ConcurrentTaskManager taskManager = Managers.getConcurrentTaskManager();
+        int writers = 8;
+        int subtasksPerEpic = 50;
+        ExecutorService executor = Executors.newFixedThreadPool(writers + 1);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int w = 0; w < writers; w++) {
+            int writer = w;
+            futures.add(executor.submit(() -> {
+                start.await();
+                Epic epic = new Epic("epic " + writer, "", null);
+                assertTrue(taskManager.createEpic(epic));
+                List<Subtask> created = new ArrayList<>();
+                for (int i = 0; i < subtasksPerEpic; i++) {
+                    Subtask subtask = new Subtask("subtask " + i, "", null, Duration.ofMinutes(15),
+                            START.plusMinutes(15L * (writer * subtasksPerEpic * 2 + i)), epic.getId());
+                    assertTrue(taskManager.createSubtask(subtask));
+                    created.add(subtask);
+                    Task task = new Task("task " + i, "", null, Duration.ofMinutes(15),
+                            START.plusMinutes(15L * (writer * subtasksPerEpic * 2 + subtasksPerEpic + i)));
+                    assertTrue(taskManager.createTask(task));
+                    taskManager.getTaskById(task.getId());
+                }
+                for (Subtask subtask : created) {
+                    subtask.setStatus(Status.DONE);
+                    assertTrue(taskManager.updateSubtask(subtask));
+                }
+                return null;
+            }));
+        }
+        Future<?> reader = executor.submit(() -> {
+            start.await();
+            while (futures.stream().anyMatch(future -> !future.isDone())) {
+                for (Epic epic : taskManager.getAllEpics()) {
+                    assertTrue(epic.getSubtasks().size() <= subtasksPerEpic);
+                }
+                taskManager.getHistory();
+            }
+            return null;
+        });
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        reader.get(30, TimeUnit.SECONDS);
+        executor.shutdown();
+
+        assertEquals(writers * subtasksPerEpic, taskManager.getAllTasks().size());
+        assertEquals(writers * subtasksPerEpic, taskManager.getAllSubtasks().size());
+        List<Epic> epics = taskManager.getAllEpics();
+        assertEquals(writers, epics.size());
+        for (Epic epic : epics) {
+            assertEquals(subtasksPerEpic, epic.getSubtasks().size());
+            assertEquals(Status.DONE, epic.getStatus());
+        }
+        assertTrue(taskManager.deleteAllTasks());
+        assertTrue(taskManager.deleteAllEpics());
+        assertTrue(taskManager.getAllSubtasks().isEmpty());
+    }
+
+    @Test
+    void subtaskIdIsTakenUnderOneEpicOnly() throws Exception {
+        ConcurrentTaskManager taskManager = Managers.getConcurrentTaskManager();
+        Epic first = new Epic("first", "", "first-epic");
+        Epic second = new Epic("second", "", "second-epic");
+        assertTrue(taskManager.createEpic(first));
+        assertTrue(taskManager.createEpic(second));
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        int rounds = 2000;
+        for (int i = 0; i < rounds; i++) {
+            String id = "contested-" + i;
+            CyclicBarrier barrier = new CyclicBarrier(2);
+            List<Future<Boolean>> creates = new ArrayList<>();
+            for (Epic epic : List.of(first, second)) {
+                LocalDateTime start = START.plusHours(2L * i + (epic == first ? 0 : 1));
+                Subtask subtask = new Subtask("subtask", "", id, Duration.ofMinutes(15), start, epic.getId());
+                creates.add(executor.submit(() -> {
+                    barrier.await();
+                    return taskManager.createSubtask(subtask);
+                }));
+            }
+            assertNotEquals(creates.get(0).get(10, TimeUnit.SECONDS), creates.get(1).get(10, TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+        int firstSubtasks = taskManager.getEpicById(first.getId()).orElseThrow().getSubtasks().size();
+        int secondSubtasks = taskManager.getEpicById(second.getId()).orElseThrow().getSubtasks().size();
+        assertEquals(rounds, firstSubtasks + secondSubtasks);
+        assertEquals(rounds, taskManager.getAllSubtasks().size());
+    }
+}
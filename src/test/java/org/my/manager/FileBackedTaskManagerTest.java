@@ -8,7 +8,14 @@ import static org.hamcrest.CoreMatchers.*;
 
 import org.junit.jupiter.api.*;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.my.manager.ext.FileBackedTaskManagerResolver;
+import org.my.manager.storage.CompressedRecordFile;
+import org.my.manager.storage.HistoryJournal;
+import org.my.manager.storage.PersistenceQueue;
+import org.my.task.Epic;
+import org.my.task.Status;
+import org.my.task.Subtask;
 import org.my.task.Task;
 import org.my.util.TaskStringifier;
 
@@ -16,13 +23,18 @@ import java.io.*;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.*;
 
 @ExtendWith(FileBackedTaskManagerResolver.class)
 public class FileBackedTaskManagerTest extends TaskManagerTest<FileBackedTaskManager> implements TestInputValues {
     private static Path saveFile;
     private static Path saveHistoryFile;
     private static Path scheduleFile;
+    private static Path indexFile;
 
     public FileBackedTaskManagerTest(FileBackedTaskManager taskManager) {
         super(taskManager);
@@ -31,12 +43,13 @@ public class FileBackedTaskManagerTest extends TaskManagerTest<FileBackedTaskMan
     @BeforeAll
     static void init() {
         Properties properties = new Properties();
-        try (FileInputStream fis = new FileInputStream("src\\main\\resources\\filebackedtaskmanager.properties")
+        try (FileInputStream fis = new FileInputStream(Paths.get("src", "main", "resources", "filebackedtaskmanager.properties").toFile())
         ) {
             properties.load(fis);
             saveFile = Paths.get(properties.getProperty("path", "dump.csv"));
             saveHistoryFile = Paths.get(properties.getProperty("historyPath", "history_dump.csv"));
             scheduleFile = Paths.get(properties.getProperty("schedulePath", "schedule.dat"));
+            indexFile = Paths.get(properties.getProperty("indexPath", "dump.idx"));
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -60,6 +73,9 @@ public class FileBackedTaskManagerTest extends TaskManagerTest<FileBackedTaskMan
             if (Files.exists(scheduleFile)) {
                 Files.delete(scheduleFile);
             }
+            if (Files.exists(indexFile)) {
+                Files.delete(indexFile);
+            }
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -77,7 +93,7 @@ public class FileBackedTaskManagerTest extends TaskManagerTest<FileBackedTaskMan
         BufferedReader br = assertDoesNotThrow(() -> new BufferedReader(new FileReader(saveFile.toFile())));
         List<String> ids = new ArrayList<>();
         while (assertDoesNotThrow(br::ready)) {
-            ids.add(assertDoesNotThrow(br::readLine).split(TaskStringifier.RECORD_SEPARATOR)[0]);
+            ids.add(assertDoesNotThrow(br::readLine).split(TaskStringifier.RECORD_SEPARATOR)[1]);
         }
         for (Task task : taskList) {
             assertTrue(ids.contains(task.getId()));
@@ -200,4 +216,540 @@ public class FileBackedTaskManagerTest extends TaskManagerTest<FileBackedTaskMan
         assertDoesNotThrow(br::close);
     }
 
-}
\ No newline at end of file
+    @Test
+    void logModeRestoresState(@TempDir Path dir) {
+        assertDoesNotThrow(getTaskManager()::close);
+        Properties properties = getDirProperties(dir);
+        properties.setProperty("mode", "log");
+        FileBackedTaskManager taskManager = assertDoesNotThrow(() -> FileBackedTaskManager.getInstance(properties));
+        Task first = getTasks().getFirst().clone();
+        Task last = getTasks().getLast().clone();
+        assertTrue(taskManager.createTask(first));
+        assertTrue(taskManager.createTask(last));
+        Epic epic = getEpics().keySet().iterator().next();
+        assertTrue(taskManager.createEpic(epic));
+        Subtask subtask = getEpics().get(epic).getFirst();
+        assertTrue(taskManager.createSubtask(subtask));
+        first.setStatus(Status.DONE);
+        assertTrue(taskManager.updateTask(first));
+        assertNotNull(taskManager.deleteTaskById(last.getId()));
+        assertTrue(Files.exists(dir.resolve("dump.log")));
+        assertDoesNotThrow(taskManager::close);
+
+        FileBackedTaskManager restored = assertDoesNotThrow(() -> FileBackedTaskManager.getInstance(properties));
+        assertEquals(List.of(first), restored.getAllTasks());
+        assertEquals(List.of(subtask), restored.getAllSubtasks());
+        Optional<Epic> restoredEpic = restored.getEpicById(epic.getId());
+        assertTrue(restoredEpic.isPresent());
+        assertEquals(List.of(subtask), restoredEpic.get().getSubtasks());
+        assertDoesNotThrow(restored::close);
+    }
+
+    @Test
+    void logModeCompactsIntoSnapshot(@TempDir Path dir) {
+        assertDoesNotThrow(getTaskManager()::close);
+        Properties properties = getDirProperties(dir);
+        properties.setProperty("mode", "log");
+        properties.setProperty("compactionThreshold", "1");
+        FileBackedTaskManager taskManager = assertDoesNotThrow(() -> FileBackedTaskManager.getInstance(properties));
+        for (Task task : getTasks()) {
+            assertTrue(taskManager.createTask(task.clone()));
+        }
+        assertDoesNotThrow(taskManager::close);
+        List<String> lines = assertDoesNotThrow(() -> Files.readAllLines(dir.resolve("dump.csv")));
+        Set<String> ids = new HashSet<>();
+        for (String line : lines.subList(1, lines.size())) {
+            ids.add(line.split(TaskStringifier.RECORD_SEPARATOR)[1]);
+        }
+        assertFalse(ids.isEmpty());
+        FileBackedTaskManager restored = assertDoesNotThrow(() -> FileBackedTaskManager.getInstance(properties));
+        assertEquals(new HashSet<>(getTasks()), new HashSet<>(restored.getAllTasks()));
+        assertDoesNotThrow(restored::close);
+    }
+
+    @Test
+    void rewriteModeUsesRecordIndex(@TempDir Path dir) {
+        assertDoesNotThrow(getTaskManager()::close);
+        Properties properties = getDirProperties(dir);
+        FileBackedTaskManager taskManager = assertDoesNotThrow(() -> FileBackedTaskManager.getInstance(properties));
+        Task first = getTasks().getFirst().clone();
+        Task last = getTasks().getLast().clone();
+        assertTrue(taskManager.createTask(first));
+        assertTrue(taskManager.createTask(last));
+        assertDoesNotThrow(taskManager::close);
+        assertTrue(Files.exists(dir.resolve("dump.idx")));
+        long size = assertDoesNotThrow(() -> Files.size(dir.resolve("dump.csv")));
+
+        taskManager = assertDoesNotThrow(() -> FileBackedTaskManager.getInstance(properties));
+        assertFalse(Files.exists(dir.resolve("dump.idx")));
+        first.setStatus(Status.DONE);
+        assertTrue(taskManager.updateTask(first));
+        assertEquals(size, assertDoesNotThrow(() -> Files.size(dir.resolve("dump.csv"))));
+        last.setDescription(last.getDescription().repeat(10));
+        assertTrue(taskManager.updateTask(last));
+        assertTrue(size < assertDoesNotThrow(() -> Files.size(dir.resolve("dump.csv"))));
+        assertNotNull(taskManager.deleteTaskById(first.getId()));
+        assertDoesNotThrow(taskManager::close);
+
+        FileBackedTaskManager restored = assertDoesNotThrow(() -> FileBackedTaskManager.getInstance(properties));
+        assertEquals(List.of(last), restored.getAllTasks());
+        assertDoesNotThrow(restored::close);
+        List<String> lines = assertDoesNotThrow(() -> Files.readAllLines(dir.resolve("dump.csv")));
+        assertEquals(1, lines.stream().filter(line -> line.contains(last.getId())).count());
+        assertTrue(lines.stream().noneMatch(line -> line.contains(first.getId())));
+    }
+
+    @Test
+    void binaryFormatAndConversion(@TempDir Path dir) {
+        assertDoesNotThrow(getTaskManager()::close);
+        Properties properties = getDirProperties(dir);
+        FileBackedTaskManager taskManager = assertDoesNotThrow(() -> FileBackedTaskManager.getInstance(properties));
+        for (Task task : getTasks()) {
+            assertTrue(taskManager.createTask(task.clone()));
+        }
+        assertDoesNotThrow(taskManager::close);
+        long textSize = assertDoesNotThrow(() -> Files.size(dir.resolve("dump.csv")));
+
+        properties.setProperty("format", "binary");
+        taskManager = assertDoesNotThrow(() -> FileBackedTaskManager.getInstance(properties));
+        assertEquals(new HashSet<>(getTasks()), new HashSet<>(taskManager.getAllTasks()));
+        Task first = getTasks().getFirst().clone();
+        first.setStatus(Status.IN_PROGRESS);
+        assertTrue(taskManager.updateTask(first));
+        assertDoesNotThrow(taskManager::close);
+        assertTrue(assertDoesNotThrow(() -> Files.size(dir.resolve("dump.csv"))) < textSize);
+
+        properties.setProperty("mode", "log");
+        taskManager = assertDoesNotThrow(() -> FileBackedTaskManager.getInstance(properties));
+        assertNotNull(taskManager.deleteTaskById(first.getId()));
+        assertDoesNotThrow(taskManager::close);
+
+        properties.setProperty("format", "text");
+        FileBackedTaskManager restored = assertDoesNotThrow(() -> FileBackedTaskManager.getInstance(properties));
+        Set<Task> expected = new HashSet<>(getTasks());
+        expected.removeIf(task -> task.getId().equals(first.getId()));
+        assertEquals(expected, new HashSet<>(restored.getAllTasks()));
+        assertDoesNotThrow(restored::close);
+    }
+
+    @Test
+    void historyRestoredInOrder(@TempDir Path dir) {
+        assertDoesNotThrow(getTaskManager()::close);
+        Properties properties = getDirProperties(dir);
+        FileBackedTaskManager taskManager = assertDoesNotThrow(() -> FileBackedTaskManager.getInstance(properties));
+        List<String> viewed = new ArrayList<>();
+        for (Task task : getTasks()) {
+            assertTrue(taskManager.createTask(task.clone()));
+        }
+        for (Task task : getTasks().reversed()) {
+            assertTrue(taskManager.getTaskById(task.getId()).isPresent());
+            viewed.add(task.getId());
+        }
+        assertTrue(taskManager.getTaskById(viewed.getFirst()).isPresent());
+        viewed.add(viewed.removeFirst());
+        assertNotNull(taskManager.deleteTaskById(viewed.getLast()));
+        viewed.removeLast();
+        Path historyFile = dir.resolve("history_dump.csv");
+        assertEquals(viewed, assertDoesNotThrow(() -> HistoryJournal.replay(historyFile)).history());
+        assertDoesNotThrow(taskManager::close);
+
+        FileBackedTaskManager restored = assertDoesNotThrow(() -> FileBackedTaskManager.getInstance(properties));
+        assertEquals(viewed, restored.getHistory().stream().map(Task::getId).toList());
+        assertDoesNotThrow(restored::close);
+    }
+
+    @Test
+    void asyncModePersistsInOrder(@TempDir Path dir) {
+        assertDoesNotThrow(getTaskManager()::close);
+        Properties properties = getDirProperties(dir);
+        properties.setProperty("async", "true");
+        properties.setProperty("asyncQueueCapacity", "2");
+        for (String mode : List.of("rewrite", "log")) {
+            properties.setProperty("mode", mode);
+            properties.setProperty("compactionThreshold", "512");
+            FileBackedTaskManager taskManager = assertDoesNotThrow(() -> FileBackedTaskManager.getInstance(properties));
+            taskManager.deleteAllTasks();
+            Set<Task> expected = new HashSet<>();
+            for (Task task : getTasks()) {
+                Task created = task.clone();
+                assertTrue(taskManager.createTask(created));
+                created.setStatus(Status.DONE);
+                assertTrue(taskManager.updateTask(created));
+                expected.add(created.clone());
+                created.setStatus(Status.IN_PROGRESS);
+            }
+            Task removed = getTasks().getLast();
+            assertNotNull(taskManager.deleteTaskById(removed.getId()));
+            expected.removeIf(task -> task.getId().equals(removed.getId()));
+            assertDoesNotThrow(() -> taskManager.persisted().get());
+            PersistenceQueue.Metrics metrics = taskManager.getPersistenceMetrics().orElseThrow();
+            assertEquals(0, metrics.depth());
+            assertEquals(0, metrics.failed());
+            assertTrue(metrics.completed() > getTasks().size());
+            assertDoesNotThrow(taskManager::close);
+
+            properties.setProperty("async", "false");
+            FileBackedTaskManager restored = assertDoesNotThrow(() -> FileBackedTaskManager.getInstance(properties));
+            assertTrue(restored.getPersistenceMetrics().isEmpty());
+            Set<Task> restoredTasks = new HashSet<>(restored.getAllTasks());
+            assertEquals(expected, restoredTasks);
+            assertDoesNotThrow(restored::close);
+            properties.setProperty("async", "true");
+        }
+    }
+
+    @Test
+    void scheduleRebuiltFromTasks(@TempDir Path dir) {
+        assertDoesNotThrow(getTaskManager()::close);
+        Properties properties = getDirProperties(dir);
+        properties.setProperty("schedule", "rebuild");
+        FileBackedTaskManager taskManager = assertDoesNotThrow(() -> FileBackedTaskManager.getInstance(properties));
+        Task first = getTasks().getFirst().clone();
+        assertTrue(taskManager.createTask(first));
+        assertDoesNotThrow(taskManager::close);
+        assertFalse(Files.exists(dir.resolve("schedule.dat")));
+
+        FileBackedTaskManager restored = assertDoesNotThrow(() -> FileBackedTaskManager.getInstance(properties));
+        Task overlapping = new Task("overlapping", "", null, first.getDuration(), first.getStartTime());
+        assertFalse(restored.createTask(overlapping));
+        assertDoesNotThrow(restored::close);
+    }
+
+    @Test
+    void legacyFileConvertedAndTornLogTruncated(@TempDir Path dir) {
+        assertDoesNotThrow(getTaskManager()::close);
+        Properties properties = getDirProperties(dir);
+        Task first = getTasks().getFirst().clone();
+        TaskStringifier taskStringifier = new TaskStringifier();
+        assertDoesNotThrow(() -> Files.writeString(dir.resolve("dump.csv"),
+                TaskStringifier.BACKUP_HEADER + taskStringifier.stringify(first)));
+        properties.setProperty("mode", "log");
+        FileBackedTaskManager taskManager = assertDoesNotThrow(() -> FileBackedTaskManager.getInstance(properties));
+        assertEquals(List.of(first), taskManager.getAllTasks());
+        assertTrue(assertDoesNotThrow(() -> Files.readString(dir.resolve("dump.csv")))
+                .startsWith("crc" + TaskStringifier.RECORD_SEPARATOR));
+        Task last = getTasks().getLast().clone();
+        assertTrue(taskManager.createTask(last));
+        assertDoesNotThrow(taskManager::close);
+        long logSize = assertDoesNotThrow(() -> Files.size(dir.resolve("dump.log")));
+        assertDoesNotThrow(() -> Files.writeString(dir.resolve("dump.log"), "0badc0de" + TaskStringifier.RECORD_SEPARATOR
+                + "D" + TaskStringifier.RECORD_SEPARATOR + last.getId(), StandardOpenOption.APPEND));
+
+        FileBackedTaskManager restored = assertDoesNotThrow(() -> FileBackedTaskManager.getInstance(properties));
+        assertEquals(Set.of(first, last), new HashSet<>(restored.getAllTasks()));
+        assertEquals(logSize, assertDoesNotThrow(() -> Files.size(dir.resolve("dump.log"))));
+        assertDoesNotThrow(restored::close);
+    }
+
+    @Test
+    void backupIsPointInTime(@TempDir Path dir) {
+        assertDoesNotThrow(getTaskManager()::close);
+        Properties properties = getDirProperties(dir.resolve("live"));
+        assertDoesNotThrow(() -> Files.createDirectories(dir.resolve("live")));
+        FileBackedTaskManager taskManager = assertDoesNotThrow(() -> FileBackedTaskManager.getInstance(properties));
+        for (Task task : getTasks()) {
+            assertTrue(taskManager.createTask(task.clone()));
+        }
+        Epic epic = getEpics().keySet().iterator().next();
+        assertTrue(taskManager.createEpic(epic));
+        Subtask subtask = getEpics().get(epic).getFirst();
+        assertTrue(taskManager.createSubtask(subtask));
+        Task first = getTasks().getFirst();
+        assertTrue(taskManager.getTaskById(first.getId()).isPresent());
+        Set<Task> expected = new HashSet<>(taskManager.getAllTasks());
+        Epic expectedEpic = taskManager.getEpicById(epic.getId()).orElseThrow();
+
+        CompletableFuture<Path> backup = taskManager.backup(dir.resolve("backup"));
+        assertNotNull(taskManager.deleteTaskById(first.getId()));
+        assertNotNull(taskManager.deleteSubtaskById(subtask.getId()));
+        assertEquals(dir.resolve("backup"), assertDoesNotThrow(() -> backup.get()));
+        assertDoesNotThrow(taskManager::close);
+
+        FileBackedTaskManager restored = assertDoesNotThrow(() ->
+                FileBackedTaskManager.getInstance(getDirProperties(dir.resolve("backup"))));
+        assertEquals(expected, new HashSet<>(restored.getAllTasks()));
+        assertEquals(List.of(first.getId(), epic.getId()), restored.getHistory().stream().map(Task::getId).toList());
+        assertEquals(expectedEpic, restored.getEpicById(epic.getId()).orElseThrow());
+        Task overlapping = new Task("overlapping", "", null, first.getDuration(), first.getStartTime());
+        assertFalse(restored.createTask(overlapping));
+        assertDoesNotThrow(restored::close);
+    }
+
+    @Test
+    void compressedSnapshots(@TempDir Path dir) {
+        assertDoesNotThrow(getTaskManager()::close);
+        Properties properties = getDirProperties(dir);
+        properties.setProperty("mode", "log");
+        properties.setProperty("compression", "deflate");
+        properties.setProperty("compressionLevel", "9");
+        FileBackedTaskManager taskManager = assertDoesNotThrow(() -> FileBackedTaskManager.getInstance(properties));
+        for (Task task : getTasks()) {
+            assertTrue(taskManager.createTask(task.clone()));
+        }
+        assertTrue(taskManager.deleteAllEpics());
+        assertDoesNotThrow(taskManager::close);
+        assertTrue(assertDoesNotThrow(() -> CompressedRecordFile.isCompressed(dir.resolve("dump.csv"))));
+
+        properties.setProperty("mode", "rewrite");
+        FileBackedTaskManager restored = assertDoesNotThrow(() -> FileBackedTaskManager.getInstance(properties));
+        assertFalse(assertDoesNotThrow(() -> CompressedRecordFile.isCompressed(dir.resolve("dump.csv"))));
+        assertEquals(new HashSet<>(getTasks()), new HashSet<>(restored.getAllTasks()));
+        assertDoesNotThrow(restored::close);
+    }
+
+    @Test
+    void logRecordsSurviveSwitchToRewrite(@TempDir Path dir) {
+        assertDoesNotThrow(getTaskManager()::close);
+        Properties properties = getDirProperties(dir);
+        properties.setProperty("mode", "log");
+        FileBackedTaskManager taskManager = assertDoesNotThrow(() -> FileBackedTaskManager.open(properties));
+        List<Task> tasks = new ArrayList<>();
+        for (Task task : getTasks()) {
+            tasks.add(task.clone());
+            assertTrue(taskManager.createTask(tasks.getLast()));
+        }
+        assertDoesNotThrow(taskManager::close);
+
+        properties.setProperty("mode", "rewrite");
+        FileBackedTaskManager rewritten = assertDoesNotThrow(() -> FileBackedTaskManager.open(properties));
+        assertEquals(new HashSet<>(tasks), new HashSet<>(rewritten.getAllTasks()));
+        assertFalse(Files.exists(dir.resolve("dump.log")));
+        assertNotNull(rewritten.deleteTaskById(tasks.removeFirst().getId()));
+        assertDoesNotThrow(rewritten::close);
+
+        properties.setProperty("mode", "log");
+        FileBackedTaskManager restored = assertDoesNotThrow(() -> FileBackedTaskManager.open(properties));
+        assertEquals(new HashSet<>(tasks), new HashSet<>(restored.getAllTasks()));
+        assertDoesNotThrow(restored::close);
+    }
+
+    @Test
+    void recordLeftInOldSlotByCrashIsDropped(@TempDir Path dir) throws IOException {
+        assertDoesNotThrow(getTaskManager()::close);
+        Properties properties = getDirProperties(dir);
+        Path dataFile = dir.resolve("dump.csv");
+        Task task = getTasks().getFirst().clone();
+        FileBackedTaskManager taskManager = assertDoesNotThrow(() -> FileBackedTaskManager.open(properties));
+        assertTrue(taskManager.createTask(task));
+        assertDoesNotThrow(taskManager::close);
+        byte[] beforeUpdate = Files.readAllBytes(dataFile);
+
+        Task moved = task.clone();
+        moved.setDescription(task.getDescription() + " which no longer fits into its slot".repeat(20));
+        taskManager = assertDoesNotThrow(() -> FileBackedTaskManager.open(properties));
+        assertTrue(taskManager.updateTask(moved));
+        assertDoesNotThrow(taskManager::close);
+        byte[] afterUpdate = Files.readAllBytes(dataFile);
+        // crash after the new slot was appended and before the old one was blanked
+        try (OutputStream out = Files.newOutputStream(dataFile)) {
+            out.write(beforeUpdate);
+            out.write(afterUpdate, beforeUpdate.length, afterUpdate.length - beforeUpdate.length);
+        }
+        Files.deleteIfExists(dir.resolve("dump.idx"));
+
+        FileBackedTaskManager recovered = assertDoesNotThrow(() -> FileBackedTaskManager.open(properties));
+        assertEquals(List.of(moved), recovered.getAllTasks());
+        assertNotNull(recovered.deleteTaskById(moved.getId()));
+        assertDoesNotThrow(recovered::close);
+        FileBackedTaskManager restored = assertDoesNotThrow(() -> FileBackedTaskManager.open(properties));
+        assertTrue(restored.getAllTasks().isEmpty());
+        assertDoesNotThrow(restored::close);
+    }
+
+    @Test
+    void recordsLargerThanWriteBuffer(@TempDir Path dir) {
+        assertDoesNotThrow(getTaskManager()::close);
+        Properties properties = getDirProperties(dir);
+        FileBackedTaskManager taskManager = assertDoesNotThrow(() -> FileBackedTaskManager.getInstance(properties));
+        List<Task> tasks = new ArrayList<>();
+        for (Task task : getTasks()) {
+            Task large = task.clone();
+            large.setDescription(large.getDescription() + " description".repeat(10_000));
+            tasks.add(large);
+            assertTrue(taskManager.createTask(large));
+        }
+        Task updated = tasks.getFirst().clone();
+        updated.setDescription(updated.getDescription() + updated.getDescription());
+        assertTrue(taskManager.updateTask(updated));
+        tasks.set(0, updated);
+        assertDoesNotThrow(taskManager::close);
+
+        FileBackedTaskManager restored = assertDoesNotThrow(() -> FileBackedTaskManager.getInstance(properties));
+        assertEquals(new HashSet<>(tasks), new HashSet<>(restored.getAllTasks()));
+        assertTrue(restored.deleteAllEpics());
+        assertDoesNotThrow(restored::close);
+
+        FileBackedTaskManager rewritten = assertDoesNotThrow(() -> FileBackedTaskManager.getInstance(properties));
+        assertEquals(new HashSet<>(tasks), new HashSet<>(rewritten.getAllTasks()));
+        assertDoesNotThrow(rewritten::close);
+    }
+
+    @Test
+    void exclusiveOwnershipHoldsLease(@TempDir Path dir) {
+        assertDoesNotThrow(getTaskManager()::close);
+        Properties properties = getDirProperties(dir);
+        properties.setProperty("ownership", "exclusive");
+        properties.setProperty("leasePath", dir.resolve("dump.lease").toString());
+        FileBackedTaskManager owner = assertDoesNotThrow(() -> FileBackedTaskManager.open(properties));
+        assertThrows(FileBackedTaskManager.ManagerSaveException.class, () -> FileBackedTaskManager.open(properties));
+        Task task = getTasks().getFirst().clone();
+        assertTrue(owner.createTask(task));
+        task.setStatus(Status.IN_PROGRESS);
+        assertTrue(owner.updateTask(task));
+        assertDoesNotThrow(owner::close);
+
+        FileBackedTaskManager next = assertDoesNotThrow(() -> FileBackedTaskManager.open(properties));
+        assertEquals(List.of(task), next.getAllTasks());
+        assertDoesNotThrow(next::close);
+    }
+
+    @Test
+    void updatesWithinWindowAreCoalesced(@TempDir Path dir) {
+        assertDoesNotThrow(getTaskManager()::close);
+        Properties properties = getDirProperties(dir);
+        properties.setProperty("mode", "log");
+        properties.setProperty("coalesceWindowMillis", "60000");
+        FileBackedTaskManager taskManager = assertDoesNotThrow(() -> FileBackedTaskManager.open(properties));
+        Task edited = getTasks().getFirst().clone();
+        Task deleted = getTasks().getLast().clone();
+        assertTrue(taskManager.createTask(edited));
+        assertTrue(taskManager.createTask(deleted));
+        Path logFile = dir.resolve("dump.log");
+        long created = assertDoesNotThrow(() -> Files.size(logFile));
+        for (int i = 0; i < 20; i++) {
+            edited.setDescription("draft " + i);
+            assertTrue(taskManager.updateTask(edited));
+            deleted.setDescription("draft " + i);
+            assertTrue(taskManager.updateTask(deleted));
+        }
+        assertEquals(created, assertDoesNotThrow(() -> Files.size(logFile)));
+        assertNotNull(taskManager.deleteTaskById(deleted.getId()));
+        long removed = assertDoesNotThrow(() -> Files.size(logFile));
+        assertDoesNotThrow(() -> taskManager.persisted().join());
+        long updated = assertDoesNotThrow(() -> Files.size(logFile));
+        assertTrue(updated > removed);
+        assertTrue(updated - removed < created);
+        assertDoesNotThrow(taskManager::close);
+
+        FileBackedTaskManager restored = assertDoesNotThrow(() -> FileBackedTaskManager.open(properties));
+        assertEquals(List.of(edited), restored.getAllTasks());
+        assertDoesNotThrow(restored::close);
+    }
+
+    @Test
+    void batchesSurviveReopen(@TempDir Path dir) {
+        assertDoesNotThrow(getTaskManager()::close);
+        for (String mode : List.of("rewrite", "log")) {
+            Properties properties = getDirProperties(dir.resolve(mode));
+            properties.setProperty("mode", mode);
+            assertDoesNotThrow(() -> Files.createDirectories(dir.resolve(mode)));
+            FileBackedTaskManager taskManager = assertDoesNotThrow(() -> FileBackedTaskManager.open(properties));
+            List<Task> created = getTasks().stream().map(Task::clone).toList();
+            assertTrue(taskManager.createAll(created));
+            Task edited = created.getFirst().clone();
+            edited.setStatus(Status.IN_PROGRESS);
+            edited.setDescription("edited in a batch with a longer description than before");
+            assertTrue(taskManager.updateAll(List.of(edited)));
+            assertNotNull(taskManager.deleteAll(List.of(created.getLast().getId())));
+            assertDoesNotThrow(taskManager::close);
+
+            FileBackedTaskManager restored = assertDoesNotThrow(() -> FileBackedTaskManager.open(properties));
+            assertEquals(Set.of(edited, created.get(1)), Set.copyOf(restored.getAllTasks()));
+            assertDoesNotThrow(restored::close);
+        }
+    }
+
+    @Test
+    void rewriteModeForcesEveryWrite(@TempDir Path dir) {
+        assertDoesNotThrow(getTaskManager()::close);
+        Properties properties = getDirProperties(dir);
+        FileBackedTaskManager taskManager = assertDoesNotThrow(() -> FileBackedTaskManager.open(properties));
+        Task task = new Task("forced", "", "forced-task", Duration.ofHours(1), LocalDateTime.of(2065, 1, 1, 10, 0));
+        assertTrue(taskManager.createTask(task));
+        long forces = taskManager.groupCommit().getForceCount();
+        Task edited = task.clone();
+        edited.setDescription("edited in place");
+        assertTrue(taskManager.updateTask(edited));
+        assertEquals(forces + 1, taskManager.groupCommit().getForceCount());
+        Task moved = task.clone();
+        moved.setDescription("moved to a new slot".repeat(20));
+        assertTrue(taskManager.updateTask(moved));
+        assertEquals(forces + 2, taskManager.groupCommit().getForceCount());
+        assertNotNull(taskManager.deleteTaskById(task.getId()));
+        assertEquals(forces + 3, taskManager.groupCommit().getForceCount());
+        assertDoesNotThrow(taskManager::close);
+    }
+
+    @Test
+    void deletedEpicTakesItsSubtasksFromDisk(@TempDir Path dir) {
+        assertDoesNotThrow(getTaskManager()::close);
+        for (String mode : List.of("rewrite", "log")) {
+            Properties properties = getDirProperties(dir.resolve(mode));
+            properties.setProperty("mode", mode);
+            assertDoesNotThrow(() -> Files.createDirectories(dir.resolve(mode)));
+            FileBackedTaskManager taskManager = assertDoesNotThrow(() -> FileBackedTaskManager.open(properties));
+            Epic epic = new Epic("epic", "", "deleted-epic");
+            Subtask subtask = new Subtask("subtask", "", "deleted-epic-subtask",
+                    Duration.ofMinutes(30), LocalDateTime.of(2055, 1, 1, 9, 0), epic.getId());
+            assertTrue(taskManager.createEpic(epic));
+            assertTrue(taskManager.createSubtask(subtask));
+            assertDoesNotThrow(taskManager::close);
+
+            FileBackedTaskManager reopened = assertDoesNotThrow(() -> FileBackedTaskManager.open(properties));
+            assertNotNull(reopened.deleteEpicById(epic.getId()));
+            assertDoesNotThrow(reopened::close);
+            if (mode.equals("rewrite")) {
+                String data = assertDoesNotThrow(() -> Files.readString(dir.resolve(mode).resolve("dump.csv")));
+                assertFalse(data.contains(subtask.getId()), "subtask slot is blanked");
+            }
+
+            FileBackedTaskManager restored = assertDoesNotThrow(() -> FileBackedTaskManager.open(properties));
+            assertTrue(restored.getAllEpics().isEmpty(), mode);
+            assertTrue(restored.getAllSubtasks().isEmpty(), mode);
+            assertDoesNotThrow(restored::close);
+        }
+    }
+
+    @Test
+    void concurrentWritersShareGroupCommit(@TempDir Path dir) throws Exception {
+        assertDoesNotThrow(getTaskManager()::close);
+        Properties properties = getDirProperties(dir);
+        properties.setProperty("mode", "log");
+        properties.setProperty("durability", "group");
+        properties.setProperty("groupCommitWindowMicros", "2000000");
+        FileBackedTaskManager taskManager = assertDoesNotThrow(() -> FileBackedTaskManager.open(properties));
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            tasks.add(new Task("group " + i, "", "group-" + i, Duration.ofHours(1),
+                    LocalDateTime.of(2060, 1, 1 + i, 10, 0)));
+        }
+        assertTrue(taskManager.createAll(tasks));
+        long forces = taskManager.groupCommit().getForceCount();
+        ExecutorService writers = Executors.newFixedThreadPool(tasks.size());
+        List<Future<Boolean>> updates = new ArrayList<>();
+        for (Task task : tasks) {
+            Task updated = task.clone();
+            updated.setDescription("updated");
+            updates.add(writers.submit(() -> taskManager.updateTask(updated)));
+            // lets the writer reach its commit before the next one changes the state, which is not thread safe
+            Thread.sleep(100);
+        }
+        for (Future<Boolean> update : updates) {
+            assertTrue(update.get(10, TimeUnit.SECONDS));
+        }
+        writers.shutdown();
+        assertTrue(taskManager.groupCommit().getForceCount() - forces < tasks.size());
+        assertDoesNotThrow(taskManager::close);
+    }
+
+    private static Properties getDirProperties(Path dir) {
+        Properties properties = new Properties();
+        properties.setProperty("path", dir.resolve("dump.csv").toString());
+        properties.setProperty("historyPath", dir.resolve("history_dump.csv").toString());
+        properties.setProperty("schedulePath", dir.resolve("schedule.dat").toString());
+        properties.setProperty("logPath", dir.resolve("dump.log").toString());
+        properties.setProperty("indexPath", dir.resolve("dump.idx").toString());
+        return properties;
+    }
+
+}
@@ -78,4 +78,21 @@ class InMemoryTaskManagerTest extends TaskManagerTest<InMemoryTaskManager> imple
         assertTrue(taskManager.getAllTasks().isEmpty());
     }
 
-}
\ No newline at end of file
+    @Test
+    void readsShareFrozenTasks() {
+        InMemoryTaskManager taskManager = getTaskManager();
+        Task first = getTasks().getFirst().clone();
+        assertTrue(taskManager.createTask(first));
+        Task read = taskManager.getTaskById(first.getId()).orElseThrow();
+        assertSame(read, taskManager.getAllTasks().getFirst());
+        assertTrue(read.isFrozen());
+        assertThrows(UnsupportedOperationException.class, () -> read.setStatus(Status.DONE));
+        Task edited = read.clone();
+        assertFalse(edited.isFrozen());
+        edited.setStatus(Status.DONE);
+        assertTrue(taskManager.updateTask(edited));
+        assertEquals(Status.NEW, read.getStatus());
+        assertEquals(Status.DONE, taskManager.getTaskById(first.getId()).orElseThrow().getStatus());
+    }
+
+}
@@ -294,7 +294,7 @@ public abstract class TaskManagerTest<T extends TaskManager> implements TestInpu
         List<Epic> allEpics = taskManager.getAllEpics();
         assumeSetupIsCorrect(taskManager.getAllTasks(), allEpics, taskManager.getAllSubtasks());
         //try to update inaccessible fields
-        Epic existingEpic = allEpics.getFirst();
+        Epic existingEpic = (Epic) allEpics.getFirst().clone();
         taskManager.updateEpic(changeEpicToFailUpdate((Epic) existingEpic.clone()));
         String id = existingEpic.getId();
         Optional<Epic> epicById = taskManager.getEpicById(id);
@@ -329,11 +329,11 @@ public abstract class TaskManagerTest<T extends TaskManager> implements TestInpu
         //changing first sub
         List<Subtask> allSubtasks = taskManager.getAllSubtasks();
         assumeSetupIsCorrect(taskManager.getAllTasks(), taskManager.getAllEpics(), allSubtasks);
-        Subtask existingSub = allSubtasks.getFirst();
+        Subtask existingSub = (Subtask) allSubtasks.getFirst().clone();
         changeSubToUpdate(existingSub);
         assertTrue(taskManager.updateSubtask(existingSub));
         assertSubAndEpicUpdated(existingSub);
-        existingSub = allSubtasks.getLast();
+        existingSub = (Subtask) allSubtasks.getLast().clone();
         changeSubToUpdate(existingSub);
         assertTrue(taskManager.updateSubtask(existingSub));
         assertSubAndEpicUpdated(existingSub);
@@ -503,6 +503,195 @@ public abstract class TaskManagerTest<T extends TaskManager> implements TestInpu
         }
     }
 
+    @Test
+    void getPrioritizedPages() {
+        for (Task task : tasks) {
+            taskManager.createTask(task.clone());
+        }
+        List<Task> prioritized = taskManager.getPrioritizedTasks();
+        assumeTrue(prioritized.size() > 2);
+        LocalDateTime from = prioritized.getFirst().getStartTime();
+        List<Task> paged = new ArrayList<>();
+        List<Task> page = taskManager.getPrioritizedTasks(from, 2);
+        while (!page.isEmpty()) {
+            assertTrue(page.size() <= 2);
+            paged.addAll(page);
+            page = taskManager.getPrioritizedTasks(page.getLast().getEndTime(), 2);
+        }
+        assertEquals(prioritized, paged);
+        LocalDateTime to = prioritized.get(2).getStartTime();
+        assertEquals(prioritized.subList(0, 2), taskManager.getPrioritizedTasks(from, to));
+        assertTrue(taskManager.getPrioritizedTasks(to, from).isEmpty());
+
+        Task deleted = prioritized.get(1);
+        if (deleted instanceof Subtask) {
+            assertNotNull(taskManager.deleteSubtaskById(deleted.getId()));
+        } else {
+            assertNotNull(taskManager.deleteTaskById(deleted.getId()));
+        }
+        assertFalse(taskManager.getPrioritizedTasks(from, to).contains(deleted));
+        assertEquals(prioritized.size() - 1, taskManager.getPrioritizedTasks().size());
+    }
+
+    @Test
+    void getTasksByStatus() {
+        for (Task task : tasks) {
+            taskManager.createTask(task.clone());
+        }
+        Epic epic = taskManager.getAllEpics().getFirst();
+        for (Subtask stored : taskManager.getSubtasksOfEpic(epic)) {
+            Subtask subtask = (Subtask) stored.clone();
+            subtask.setStatus(Status.DONE);
+            assertTrue(taskManager.updateSubtask(subtask));
+        }
+        List<Task> all = new ArrayList<>(taskManager.getAllTasks());
+        all.addAll(taskManager.getAllEpics());
+        all.addAll(taskManager.getAllSubtasks());
+        Map<Status, Integer> counts = taskManager.countByStatus();
+        for (Status status : Status.values()) {
+            Set<Task> expected = new HashSet<>(all.stream().filter(task -> task.getStatus() == status).toList());
+            assertEquals(expected, new HashSet<>(taskManager.getTasksByStatus(status)));
+            assertEquals(expected.size(), counts.get(status));
+        }
+        assertTrue(taskManager.getTasksByStatus(Status.DONE).stream()
+                .anyMatch(task -> task.getId().equals(epic.getId())));
+
+        Subtask reopened = (Subtask) taskManager.getSubtasksOfEpic(epic).getFirst().clone();
+        reopened.setStatus(Status.NEW);
+        assertTrue(taskManager.updateSubtask(reopened));
+        assertTrue(taskManager.getTasksByStatus(Status.IN_PROGRESS).stream()
+                .anyMatch(task -> task.getId().equals(epic.getId())));
+        assertNotNull(taskManager.deleteEpicById(epic.getId()));
+        assertEquals(taskManager.getAllTasks().size(),
+                taskManager.countByStatus().values().stream().mapToInt(Integer::intValue).sum());
+    }
+
+    @Test
+    void batchMutations() {
+        String epicId = assertDoesNotThrow(ID_GENERATOR::generateId);
+        LocalDateTime start = LocalDateTime.of(2040, 1, 1, 9, 0);
+        Epic epic = new Epic("batch epic", "", epicId);
+        Subtask first = new Subtask("first", "", assertDoesNotThrow(ID_GENERATOR::generateId),
+                Duration.ofMinutes(30), start, epicId);
+        Subtask second = new Subtask("second", "", assertDoesNotThrow(ID_GENERATOR::generateId),
+                Duration.ofMinutes(30), start.plusHours(1), epicId);
+        Task task = new Task("task", "", assertDoesNotThrow(ID_GENERATOR::generateId),
+                Duration.ofMinutes(30), start.plusHours(2));
+        Task overlapping = new Task("overlapping", "", assertDoesNotThrow(ID_GENERATOR::generateId),
+                Duration.ofMinutes(30), start.plusHours(2));
+        int before = taskManager.getAllTasks().size();
+        assertFalse(taskManager.createAll(List.of(task, overlapping)));
+        assertEquals(before, taskManager.getAllTasks().size());
+        assertTrue(taskManager.createAll(List.of(first, epic, second, task)));
+        assertEquals(List.of(first, second), taskManager.getSubtasksOfEpic(epic));
+        assertTrue(taskManager.getAllTasks().contains(task));
+
+        Subtask firstDone = (Subtask) first.clone();
+        firstDone.setStatus(Status.DONE);
+        Subtask secondDone = (Subtask) second.clone();
+        secondDone.setStatus(Status.DONE);
+        secondDone.setStartTime(start.plusHours(3));
+        Task unknown = new Task("unknown", "", "unknown", null, null);
+        assertFalse(taskManager.updateAll(List.of(firstDone, unknown)));
+        assertEquals(first, taskManager.getSubtaskById(first.getId()).orElseThrow());
+        assertTrue(taskManager.updateAll(List.of(firstDone, secondDone)));
+        Epic updated = taskManager.getEpicById(epicId).orElseThrow();
+        assertEquals(Status.DONE, updated.getStatus());
+        assertEquals(start, updated.getStartTime());
+        assertEquals(secondDone.getEndTime(), updated.getEndTime());
+        assertTrue(taskManager.getTasksByStatus(Status.DONE).contains(updated));
+
+        assertNull(taskManager.deleteAll(List.of(task.getId(), "unknown")));
+        assertTrue(taskManager.getAllTasks().contains(task));
+        List<Task> deleted = taskManager.deleteAll(List.of(epicId, task.getId()));
+        assertNotNull(deleted);
+        assertEquals(4, deleted.size());
+        assertTrue(taskManager.getEpicById(epicId).isEmpty());
+        assertTrue(taskManager.getSubtaskById(first.getId()).isEmpty());
+        assertEquals(before, taskManager.getAllTasks().size());
+        assertTrue(taskManager.createTask(overlapping));
+    }
+
+    @Test
+    void epicUpdatedAloneOrInBatchAlike() {
+        Epic epic = new Epic("epic", "", "update-epic");
+        Subtask subtask = new Subtask("subtask", "", "update-epic-subtask",
+                Duration.ofMinutes(30), LocalDateTime.of(2050, 1, 1, 9, 0), epic.getId());
+        assertTrue(taskManager.createEpic(epic));
+        assertTrue(taskManager.createSubtask(subtask));
+        Epic change = (Epic) taskManager.getEpicById(epic.getId()).orElseThrow().clone();
+        change.setTitle("renamed epic");
+        change.setStatus(Status.DONE);
+        change.getSubtasks().clear();
+        assertTrue(taskManager.updateAll(List.of(change)));
+        Epic batched = taskManager.getEpicById(epic.getId()).orElseThrow();
+        assertTrue(taskManager.updateEpic(change));
+        Epic single = taskManager.getEpicById(epic.getId()).orElseThrow();
+        assertEquals(batched, single);
+        assertEquals("renamed epic", single.getTitle());
+        assertEquals(Status.NEW, single.getStatus());
+        assertEquals(List.of(subtask), single.getSubtasks());
+    }
+
+    @Test
+    void movedTaskFreesItsOldTime() {
+        LocalDateTime nine = LocalDateTime.of(2070, 1, 1, 9, 0);
+        Task task = new Task("moved", "", "moved-task", Duration.ofHours(1), nine);
+        assertTrue(taskManager.createTask(task));
+        Task moved = task.clone();
+        moved.setStartTime(nine.plusHours(3));
+        assertTrue(taskManager.updateTask(moved));
+        assertFalse(taskManager.createTask(
+                new Task("at new time", "", "moved-task-overlap", Duration.ofHours(1), nine.plusHours(3))));
+        assertTrue(taskManager.createTask(
+                new Task("at old time", "", "moved-task-freed", Duration.ofHours(1), nine)));
+
+        Task unscheduled = moved.clone();
+        unscheduled.setStartTime(null);
+        assertTrue(taskManager.updateTask(unscheduled));
+        assertTrue(taskManager.createTask(
+                new Task("after unscheduling", "", "moved-task-unscheduled", Duration.ofHours(1), nine.plusHours(3))));
+        assertFalse(taskManager.updateTask(moved));
+        Task rescheduled = moved.clone();
+        rescheduled.setStartTime(nine.plusHours(6));
+        assertTrue(taskManager.updateTask(rescheduled));
+    }
+
+    @Test
+    void search() {
+        LocalDateTime start = LocalDateTime.of(2045, 1, 1, 9, 0);
+        Task bug = new Task("Fix login bug", "Users can't sign in", "search-bug", Duration.ofMinutes(30), start);
+        Task deploy = new Task("Deploy fix", "Rollback if login fails", "search-deploy",
+                Duration.ofMinutes(30), start.plusHours(1));
+        Epic docs = new Epic("Write docs", "", "search-docs");
+        assertTrue(taskManager.createTask(bug));
+        assertTrue(taskManager.createTask(deploy));
+        assertTrue(taskManager.createEpic(docs));
+        assertEquals(Set.of(bug.getId(), deploy.getId()), searchIds("FIX", 10));
+        assertEquals(Set.of(bug.getId()), searchIds("login bug", 10));
+        assertEquals(Set.of(bug.getId(), docs.getId()), searchIds("docs OR can't bug", 10));
+        assertEquals(1, taskManager.search("fix login", 1).size());
+        assertTrue(taskManager.search("fix unknown", 10).isEmpty());
+
+        Task repaired = bug.clone();
+        repaired.setTitle("Repair login");
+        assertTrue(taskManager.updateTask(repaired));
+        assertTrue(searchIds("bug", 10).isEmpty());
+        assertEquals(Set.of(bug.getId()), searchIds("repair", 10));
+        assertNotNull(taskManager.deleteTaskById(deploy.getId()));
+        assertTrue(searchIds("deploy", 10).isEmpty());
+        assertNotNull(taskManager.deleteEpicById(docs.getId()));
+        assertTrue(searchIds("docs", 10).isEmpty());
+    }
+
+    private Set<String> searchIds(String query, int limit) {
+        Set<String> ids = new HashSet<>();
+        for (Task task : taskManager.search(query, limit)) {
+            ids.add(task.getId());
+        }
+        return ids;
+    }
+
     public T getTaskManager() {
         return taskManager;
     }
@@ -0,0 +1,68 @@
+package org.my.manager.scheduler;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.my.task.Task;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScheduleStoreTest {
+    private static final Task NEW_YEAR = new Task("party", "", "a", Duration.ofHours(2),
+            LocalDateTime.of(2024, 12, 31, 23, 0));
+    private static final Task SUMMER = new Task("trip", "", "b", Duration.ofDays(3),
+            LocalDateTime.of(2026, 7, 1, 8, 0));
+
+    @Test
+    void writesOnlyDirtyYears(@TempDir Path dir) throws IOException, ClassNotFoundException {
+        Path file = dir.resolve("schedule.dat");
+        Scheduler scheduler;
+        try (ScheduleStore store = new ScheduleStore(file)) {
+            scheduler = store.load();
+            assertTrue(scheduler.setInterval(NEW_YEAR));
+            assertTrue(scheduler.setInterval(SUMMER));
+            Map<Integer, long[]> dirty = scheduler.takeDirtyYears();
+            assertEquals(3, dirty.size());
+            store.write(dirty);
+            long size = Files.size(file);
+
+            assertTrue(scheduler.removeInterval(SUMMER));
+            dirty = scheduler.takeDirtyYears();
+            assertEquals(Set.of(2026), dirty.keySet());
+            store.write(dirty);
+            assertEquals(size, Files.size(file));
+            assertTrue(scheduler.takeDirtyYears().isEmpty());
+        }
+        try (ScheduleStore store = new ScheduleStore(file)) {
+            Scheduler restored = store.load();
+            assertFalse(restored.setInterval(NEW_YEAR));
+            assertTrue(restored.setInterval(SUMMER));
+        }
+    }
+
+    @Test
+    void convertsSerializedScheduler(@TempDir Path dir) throws IOException, ClassNotFoundException {
+        Path file = dir.resolve("schedule.dat");
+        Scheduler scheduler = new Scheduler();
+        assertTrue(scheduler.setInterval(NEW_YEAR));
+        try (ObjectOutputStream out = new ObjectOutputStream(Files.newOutputStream(file))) {
+            out.writeObject(scheduler);
+        }
+        try (ScheduleStore store = new ScheduleStore(file)) {
+            assertFalse(store.load().setInterval(NEW_YEAR));
+        }
+        try (ScheduleStore store = new ScheduleStore(file)) {
+            Scheduler restored = store.load();
+            assertFalse(restored.setInterval(NEW_YEAR));
+            assertTrue(restored.takeDirtyYears().isEmpty());
+        }
+    }
+}
@@ -1,7 +1,15 @@
 package org.my.manager.scheduler;
 
 import org.junit.jupiter.api.Test;
+import org.my.task.Task;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
 
 class SchedulerTest {
 
@@ -15,10 +23,46 @@ class SchedulerTest {
 
     @Test
     void removeInterval() {
+        Scheduler scheduler = new Scheduler();
+        Task task = new Task("task", "", "task", Duration.ofHours(2), LocalDateTime.of(2023, 6, 1, 10, 0));
+        assertTrue(scheduler.setInterval(task));
+        assertFalse(scheduler.setInterval(task));
+        assertTrue(scheduler.removeInterval(task));
+        assertTrue(scheduler.setInterval(task));
     }
 
     @Test
     void updateInterval() {
+        Scheduler scheduler = new Scheduler();
+        Task task = new Task("task", "", "task", Duration.ofHours(2), LocalDateTime.of(2023, 6, 1, 10, 0));
+        Task moved = new Task("task", "", "task", Duration.ofHours(2), LocalDateTime.of(2024, 6, 1, 10, 0));
+        assertTrue(scheduler.setInterval(task));
+        assertTrue(scheduler.updateInterval(task, moved));
+        assertFalse(scheduler.setInterval(moved));
+        assertTrue(scheduler.setInterval(task));
+    }
+
+    @Test
+    void rebuildMatchesIncremental() {
+        Scheduler scheduler = new Scheduler();
+        List<Task> tasks = new ArrayList<>();
+        LocalDateTime start = LocalDateTime.of(2023, 12, 1, 0, 0);
+        for (int i = 0; i < 2000; i++) {
+            Task task = new Task("task " + i, "", String.valueOf(i), Duration.ofMinutes(15L * (1 + i % 8)), start);
+            assertTrue(scheduler.setInterval(task));
+            tasks.add(task);
+            start = task.getEndTime().plusMinutes(15L * (i % 3));
+        }
+        Task longTask = new Task("long", "", "long", Duration.ofDays(800), start.plusDays(1));
+        assertTrue(scheduler.setInterval(longTask));
+        tasks.add(longTask);
 
+        Scheduler rebuilt = Scheduler.rebuild(tasks);
+        Map<Integer, long[]> expected = scheduler.takeDirtyYears();
+        rebuilt.markAllDirty();
+        Map<Integer, long[]> actual = rebuilt.takeDirtyYears();
+        assertEquals(expected.keySet(), actual.keySet());
+        expected.forEach((year, words) -> assertArrayEquals(words, actual.get(year), "year " + year));
+        assertFalse(rebuilt.setInterval(tasks.get(tasks.size() / 2)));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,67 @@
+package org.my.manager.storage;
+
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.my.task.Task;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompressedRecordFileTest {
+
+    @ParameterizedTest
+    @ValueSource(strings = {TextRecordFormat.NAME, BinaryRecordFormat.NAME})
+    void compressedFileReadsLikePlainFile(String formatName, @TempDir Path dir) throws IOException {
+        RecordFormat recordFormat = RecordFormat.of(formatName);
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 0; i < 20000; i++) {
+            tasks.add(new Task("task " + i, "a long and repetitive description of task number " + i, "t" + i,
+                    Duration.ofMinutes(15), LocalDateTime.of(2024, 1, 1, 0, 0).plusMinutes(15L * i)));
+        }
+        Path plainFile = dir.resolve("plain.csv");
+        Path compressedFile = dir.resolve("compressed.csv");
+        try (OutputStream plain = new BufferedOutputStream(Files.newOutputStream(plainFile));
+             OutputStream compressed = new BufferedOutputStream(Files.newOutputStream(compressedFile));
+             CompressedRecordFile.Writer writer = new CompressedRecordFile.Writer(compressed, recordFormat, 6)) {
+            plain.write(recordFormat.header());
+            for (Task task : tasks) {
+                plain.write(recordFormat.encode(task));
+                writer.write(recordFormat.encode(task));
+            }
+        }
+        assertTrue(CompressedRecordFile.isCompressed(compressedFile));
+        assertFalse(CompressedRecordFile.isCompressed(plainFile));
+        assertSame(recordFormat, RecordFormat.detect(compressedFile, null));
+        assertTrue(Files.size(compressedFile) * 3 < Files.size(plainFile));
+
+        List<Task> read = new ArrayList<>();
+        ParallelRecordReader.Result result = ParallelRecordReader.read(compressedFile, recordFormat,
+                ForkJoinPool.commonPool(), (offset, length, task) -> read.add(task));
+        assertFalse(result.damaged());
+        assertEquals(tasks, read);
+
+        try (RandomAccessFile file = new RandomAccessFile(compressedFile.toFile(), "rw")) {
+            file.setLength(file.length() - 10);
+        }
+        List<Task> partial = new ArrayList<>();
+        result = ParallelRecordReader.read(compressedFile, recordFormat, ForkJoinPool.commonPool(),
+                (offset, length, task) -> partial.add(task));
+        assertTrue(result.damaged());
+        assertFalse(partial.isEmpty());
+        assertEquals(tasks.subList(0, partial.size()), partial);
+        result.repair(compressedFile, recordFormat);
+        List<Task> repaired = new ArrayList<>();
+        assertFalse(ParallelRecordReader.read(compressedFile, recordFormat, ForkJoinPool.commonPool(),
+                (offset, length, task) -> repaired.add(task)).damaged());
+        assertEquals(partial, repaired);
+    }
+}
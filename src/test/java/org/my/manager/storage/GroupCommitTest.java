@@ -0,0 +1,60 @@
+package org.my.manager.storage;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GroupCommitTest {
+
+    @Test
+    void groupSharesForce() throws InterruptedException {
+        GroupCommit groupCommit = new GroupCommit(GroupCommit.Durability.GROUP, 20_000, Long.MAX_VALUE);
+        AtomicInteger forces = new AtomicInteger();
+        int writers = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(writers);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < writers; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                long ticket = groupCommit.register(10);
+                groupCommit.await(ticket, forces::incrementAndGet);
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            assertDoesNotThrow(() -> future.get(10, TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+        assertTrue(forces.get() >= 1);
+        assertTrue(forces.get() < writers);
+    }
+
+    @Test
+    void sizeThresholdEndsWindow() {
+        GroupCommit groupCommit = new GroupCommit(GroupCommit.Durability.GROUP, TimeUnit.MINUTES.toMicros(1), 10);
+        AtomicInteger forces = new AtomicInteger();
+        long ticket = groupCommit.register(10);
+        assertTimeoutPreemptively(java.time.Duration.ofSeconds(10),
+                () -> groupCommit.await(ticket, forces::incrementAndGet));
+        assertEquals(1, forces.get());
+    }
+
+    @Test
+    void durabilityModes() {
+        AtomicInteger forces = new AtomicInteger();
+        GroupCommit perOp = new GroupCommit(GroupCommit.Durability.OP, 0, 0);
+        assertDoesNotThrow(() -> perOp.await(perOp.register(1), forces::incrementAndGet));
+        assertDoesNotThrow(() -> perOp.await(perOp.register(1), forces::incrementAndGet));
+        assertEquals(2, forces.get());
+        GroupCommit os = new GroupCommit(GroupCommit.Durability.OS, 0, 0);
+        assertDoesNotThrow(() -> os.await(os.register(1), forces::incrementAndGet));
+        assertEquals(2, forces.get());
+    }
+}
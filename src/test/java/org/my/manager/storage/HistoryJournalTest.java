@@ -0,0 +1,37 @@
+package org.my.manager.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HistoryJournalTest {
+
+    @Test
+    void replayAndCompaction(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("history.csv");
+        HistoryJournal journal = HistoryJournal.open(file, HistoryJournal.replay(file));
+        for (int i = 0; i < 2000; i++) {
+            journal.touched("a");
+            journal.touched("b");
+        }
+        journal.touched("c");
+        journal.removed("b");
+        assertTrue(journal.needsCompaction());
+        assertEquals(List.of("a", "c"), HistoryJournal.replay(file).history());
+
+        journal.compact(List.of("a", "c"));
+        assertFalse(journal.needsCompaction());
+        journal.touched("a");
+        journal.close();
+        assertEquals(4, Files.readAllLines(file).size());
+        HistoryJournal.Replay replay = HistoryJournal.replay(file);
+        assertEquals(List.of("c", "a"), replay.history());
+        assertEquals(3, replay.records());
+    }
+}
@@ -0,0 +1,112 @@
+package org.my.manager.storage;
+
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.my.task.Epic;
+import org.my.task.Status;
+import org.my.task.Subtask;
+import org.my.task.Task;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParallelRecordReaderTest {
+
+    @ParameterizedTest
+    @ValueSource(strings = {TextRecordFormat.NAME, BinaryRecordFormat.NAME})
+    void parallelReadMatchesSequential(String formatName, @TempDir Path dir) throws IOException {
+        RecordFormat recordFormat = RecordFormat.of(formatName);
+        Path dataFile = dir.resolve("dump.csv");
+        write(dataFile, recordFormat);
+        List<String> sequential = new ArrayList<>();
+        ParallelRecordReader.Result result = ParallelRecordReader.read(dataFile, recordFormat,
+                ForkJoinPool.commonPool(), Long.MAX_VALUE / 2,
+                (offset, length, task) -> sequential.add(describe(offset, length, task)));
+        assertFalse(result.damaged());
+        List<String> parallel = new ArrayList<>();
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            ParallelRecordReader.read(dataFile, recordFormat, pool, 256,
+                    (offset, length, task) -> parallel.add(describe(offset, length, task)));
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals(2000, sequential.size());
+        assertEquals(sequential, parallel);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {TextRecordFormat.NAME, BinaryRecordFormat.NAME})
+    void damageIsRepaired(String formatName, @TempDir Path dir) throws IOException {
+        RecordFormat recordFormat = RecordFormat.of(formatName);
+        Path dataFile = dir.resolve("dump.csv");
+        write(dataFile, recordFormat);
+        List<Long> offsets = new ArrayList<>();
+        ParallelRecordReader.read(dataFile, recordFormat, ForkJoinPool.commonPool(),
+                (offset, length, task) -> offsets.add(offset));
+        long corruptOffset = offsets.get(1000);
+        long tornOffset = offsets.get(1990);
+        try (RandomAccessFile file = new RandomAccessFile(dataFile.toFile(), "rw")) {
+            file.seek(corruptOffset + 12);
+            file.write(file.read() ^ 1);
+            file.setLength(tornOffset + 10);
+        }
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            List<Long> read = new ArrayList<>();
+            ParallelRecordReader.Result result = ParallelRecordReader.read(dataFile, recordFormat, pool, 256,
+                    (offset, length, task) -> read.add(offset));
+            assertTrue(result.damaged());
+            assertEquals(tornOffset, result.validLength());
+            assertEquals(List.of(corruptOffset), result.corrupt().stream().map(RecordIndex.Slot::offset).toList());
+            List<Long> expected = new ArrayList<>(offsets.subList(0, 1990));
+            expected.remove(corruptOffset);
+            assertEquals(expected, read);
+
+            result.repair(dataFile, recordFormat);
+            assertEquals(tornOffset, Files.size(dataFile));
+            List<String> repaired = new ArrayList<>();
+            result = ParallelRecordReader.read(dataFile, recordFormat, pool, 256,
+                    (offset, length, task) -> repaired.add(describe(offset, length, task)));
+            assertFalse(result.damaged());
+            assertTrue(repaired.contains(describe(corruptOffset,
+                    (int) (offsets.get(1001) - corruptOffset), null)));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static void write(Path dataFile, RecordFormat recordFormat) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(dataFile))) {
+            out.write(recordFormat.header());
+            for (int i = 0; i < 2000; i++) {
+                Task task = switch (i % 3) {
+                    case 0 -> new Task("task " + i, "description", "t" + i, Duration.ofMinutes(i),
+                            LocalDateTime.of(2024, 1, 1, 0, 0).plusHours(i));
+                    case 1 -> new Epic("epic " + i, "", "e" + i);
+                    default -> new Subtask("subtask " + i, "", "s" + i, Duration.ofSeconds(i),
+                            LocalDateTime.of(2024, 1, 1, 0, 0).plusMinutes(i), "e" + (i - 1));
+                };
+                task.setStatus(Status.values()[i % Status.values().length]);
+                byte[] record = recordFormat.encode(task);
+                int slotLength = RecordIndex.slotLength(record.length);
+                out.write((i % 7 == 0 ? recordFormat.blankSlot(slotLength) : recordFormat.toSlot(record, slotLength))
+                        .array());
+            }
+        }
+    }
+
+    private static String describe(long offset, int length, Task task) {
+        return offset + ":" + length + ":" + (task == null ? null : task + " " + task.getStartTime() + " "
+                + task.getDuration() + " " + (task instanceof Subtask subtask ? subtask.getEpicId() : ""));
+    }
+}
@@ -0,0 +1,67 @@
+package org.my.manager.storage;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PersistenceQueueTest {
+
+    @Test
+    void writesInOrderWithBackpressure() throws Exception {
+        PersistenceQueue queue = new PersistenceQueue(1, "test-persistence");
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> written = new CopyOnWriteArrayList<>();
+        queue.submit(release::await);
+        queue.submit(() -> written.add(0));
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<CompletableFuture<Void>> blocked = executor.submit(() -> queue.submit(() -> written.add(1)));
+        assertThrows(TimeoutException.class, () -> blocked.get(100, TimeUnit.MILLISECONDS));
+        PersistenceQueue.Metrics metrics = queue.metrics();
+        assertEquals(1, metrics.depth());
+        assertTrue(metrics.lagNanos() > 0);
+
+        release.countDown();
+        blocked.get(1, TimeUnit.SECONDS).get(1, TimeUnit.SECONDS);
+        queue.flush().get(1, TimeUnit.SECONDS);
+        assertEquals(List.of(0, 1), new ArrayList<>(written));
+        metrics = queue.metrics();
+        assertEquals(0, metrics.depth());
+        assertEquals(3, metrics.completed());
+        executor.shutdown();
+        queue.close();
+    }
+
+    @Test
+    void failureCompletesFuture() throws Exception {
+        PersistenceQueue queue = new PersistenceQueue(4, "test-persistence");
+        CompletableFuture<Void> failed = queue.submit(() -> {
+            throw new IOException("disk full");
+        });
+        CompletableFuture<Void> next = queue.submit(() -> {
+        });
+        ExecutionException e = assertThrows(ExecutionException.class, () -> failed.get(1, TimeUnit.SECONDS));
+        assertInstanceOf(IOException.class, e.getCause());
+        assertDoesNotThrow(() -> next.get(1, TimeUnit.SECONDS));
+        assertEquals(1, queue.metrics().failed());
+        queue.close();
+        assertThrows(IllegalStateException.class, () -> queue.submit(() -> {
+        }));
+    }
+
+    @Test
+    void interruptedCloseKeepsInterrupt() throws Exception {
+        PersistenceQueue queue = new PersistenceQueue(1, "test-persistence");
+        CountDownLatch release = new CountDownLatch(1);
+        queue.submit(release::await);
+        Thread.currentThread().interrupt();
+        assertThrows(InterruptedIOException.class, queue::close);
+        assertTrue(Thread.interrupted());
+        release.countDown();
+    }
+}
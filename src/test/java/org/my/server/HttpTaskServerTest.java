@@ -421,4 +421,28 @@ class HttpTaskServerTest {
         ).statusCode();
         assertEquals(TaskHandlers.SUCCESS, statusCode);
     }
-}
\ No newline at end of file
+
+    @Test
+    void search() throws IOException, InterruptedException {
+        postTasks();
+        HttpResponse.BodyHandler<String> bodyHandler = HttpResponse.BodyHandlers.ofString();
+        String query = URLEncoder.encode("base CAMP", StandardCharsets.UTF_8);
+        HttpResponse<String> response = httpClient.send(HttpRequest.newBuilder()
+                        .uri(URI.create(ADDRESS + HttpTaskServer.SEARCH_PATH + "?q=" + query + "&limit=5"))
+                        .GET()
+                        .build(),
+                bodyHandler
+        );
+        assertEquals(TaskHandlers.SUCCESS, response.statusCode());
+        Decoder<Task> decoder = new Decoder<>(Task.class);
+        Task found = decoder.decode(response.body()).getContent().getFirst();
+        assertEquals(TestInputValues.LEVEL_1_NAMES.getFirst(), found.getTitle());
+        int statusCode = httpClient.send(HttpRequest.newBuilder()
+                        .uri(URI.create(ADDRESS + HttpTaskServer.SEARCH_PATH))
+                        .GET()
+                        .build(),
+                bodyHandler
+        ).statusCode();
+        assertEquals(TaskHandlers.NOT_ACCEPTABLE, statusCode);
+    }
+}
@@ -2,9 +2,17 @@ package org.my.task;
 
 import org.junit.jupiter.api.Test;
 import org.my.manager.TestInputValues;
+import org.my.server.message.Decoder;
+import org.my.server.message.Encoder;
+import org.my.server.message.Message;
 import org.my.util.IdGenerator;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Random;
 import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -33,4 +41,107 @@ class EpicTest implements TestInputValues {
                 .toList();
         System.out.println(epicList);
     }
-}
\ No newline at end of file
+
+    @Test
+    void incrementalRollupMatchesRescan() {
+        Random random = new Random(42);
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 0, 0);
+        Epic epic = new Epic("epic", "", "epic");
+        List<Subtask> held = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            Subtask subtask = new Subtask("subtask " + i, "", String.valueOf(i),
+                    Duration.ofMinutes(1 + random.nextInt(60)), start.plusMinutes(random.nextInt(10_000)), "epic");
+            subtask.setStatus(Status.values()[random.nextInt(Status.values().length)]);
+            int action = held.isEmpty() ? 0 : random.nextInt(3);
+            if (action == 0) {
+                epic.addSubtask(subtask);
+                held.add(subtask);
+            } else if (action == 1) {
+                assertTrue(epic.removeSubtask(held.remove(random.nextInt(held.size()))));
+            } else {
+                assertTrue(epic.replaceSubtask(held.set(random.nextInt(held.size()), subtask), subtask));
+            }
+            Epic rescanned = (Epic) epic.clone();
+            rescanned.resolveEpicData();
+            assertEquals(rescanned.getStatus(), epic.getStatus());
+            assertEquals(rescanned.getStartTime(), epic.getStartTime());
+            assertEquals(rescanned.getEndTime(), epic.getEndTime());
+            assertEquals(rescanned.getDuration(), epic.getDuration());
+        }
+        while (!held.isEmpty()) {
+            assertTrue(epic.removeSubtask(held.removeLast()));
+        }
+        assertEquals(Status.NEW, epic.getStatus());
+        assertNull(epic.getStartTime());
+        assertNull(epic.getEndTime());
+    }
+
+    @Test
+    void subtasksAreFoundById() {
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 0, 0);
+        Epic epic = new Epic("epic", "", "epic");
+        List<Subtask> created = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            Subtask subtask = new Subtask("subtask " + i, "", String.valueOf(i),
+                    Duration.ofMinutes(1), start.plusMinutes(i), "epic");
+            epic.addSubtask(subtask);
+            created.add(subtask);
+        }
+        for (Subtask subtask : created) {
+            assertTrue(epic.getSubtasks().contains(subtask));
+            Subtask done = (Subtask) subtask.clone();
+            done.setStatus(Status.DONE);
+            assertTrue(epic.replaceSubtask(subtask, done));
+            assertFalse(epic.getSubtasks().contains(subtask));
+        }
+        assertEquals(Status.DONE, epic.getStatus());
+        assertEquals(created.size(), epic.getSubtasks().size());
+        assertEquals("9999", epic.getSubtasks().getLast().getId());
+        assertEquals("7500", epic.getSubtasks().get(7500).getId());
+        assertEquals(9999, epic.getSubtasks().indexOf(epic.getSubtasks().getLast()));
+
+        Message<Epic> decoded = new Decoder<>(Epic.class).decode(new Encoder<Epic>().encode(new Message<>(epic)));
+        Epic received = decoded.getContent().getFirst();
+        assertEquals(epic, received);
+        assertEquals(epic.hashCode(), received.hashCode());
+        assertTrue(received.removeSubtask(received.getSubtasks().getFirst()));
+        assertEquals(start.plusMinutes(1), received.getStartTime());
+    }
+
+    @Test
+    void subtaskWithTakenIdIsRejected() {
+        Epic epic = new Epic("epic", "", "epic");
+        Subtask subtask = new Subtask("subtask", "", "subtask", null, null, "epic");
+        Subtask done = (Subtask) subtask.clone();
+        done.setStatus(Status.DONE);
+        epic.addSubtask(subtask);
+        assertThrows(IllegalArgumentException.class, () -> epic.addSubtask(done));
+        assertThrows(IllegalArgumentException.class, () -> epic.getSubtasks().add(done));
+        assertEquals(List.of(subtask), epic.getSubtasks());
+        assertEquals(Status.NEW, epic.getStatus());
+        assertTrue(epic.replaceSubtask(subtask, done));
+        assertEquals(Status.DONE, epic.getStatus());
+    }
+
+    @Test
+    void snapshotsKeepTheirSubtasks() {
+        Epic epic = new Epic("epic", "", "epic");
+        Subtask first = new Subtask("first", "", "first", null, null, "epic");
+        Subtask second = new Subtask("second", "", "second", null, null, "epic");
+        Subtask third = new Subtask("third", "", "third", null, null, "epic");
+        epic.addSubtask(first);
+        epic.addSubtask(second);
+        Epic before = epic.snapshot();
+        assertEquals(before, epic.snapshot());
+        epic.addSubtask(third);
+        assertEquals(List.of(first, second), before.getSubtasks());
+        Epic added = epic.snapshot();
+        Iterator<Subtask> iterator = epic.getSubtasks().iterator();
+        iterator.next();
+        iterator.remove();
+        assertEquals(second, iterator.next());
+        assertEquals(List.of(second, third), epic.getSubtasks());
+        assertEquals(List.of(first, second, third), added.getSubtasks());
+        assertThrows(UnsupportedOperationException.class, () -> added.getSubtasks().remove(first));
+    }
+}
@@ -0,0 +1,70 @@
+package org.my.util;
+
+import org.junit.jupiter.api.Test;
+import org.my.manager.TestInputValues;
+import org.my.task.Epic;
+import org.my.task.Status;
+import org.my.task.Subtask;
+import org.my.task.Task;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BinaryTaskCodecTest {
+    private final BinaryTaskCodec codec = new BinaryTaskCodec();
+
+    @Test
+    void roundTrip() throws IdGenerator.IdGeneratorOverflow {
+        IdGenerator idGenerator = new IdGenerator();
+        Task task = new Task(TestInputValues.LEVEL_1_NAMES.getFirst(),
+                TestInputValues.LEVEL_1_DESCRIPTIONS.getFirst(),
+                idGenerator.generateId(),
+                TestInputValues.LEVEL_1_DURATION.getFirst(),
+                TestInputValues.LEVEL_1_START_DATE_TIMES.getFirst());
+        task.setStatus(Status.DONE);
+        Task decodedTask = codec.decode(ByteBuffer.wrap(codec.encode(task)));
+        assertEquals(task, decodedTask);
+        assertEquals(task.getStartTime(), decodedTask.getStartTime());
+        assertEquals(task.getDuration(), decodedTask.getDuration());
+
+        Epic epic = new Epic(TestInputValues.LEVEL_1_NAMES.getLast(), "", idGenerator.generateId());
+        Task decodedEpic = codec.decode(ByteBuffer.wrap(codec.encode(epic)));
+        assertInstanceOf(Epic.class, decodedEpic);
+        assertEquals(epic, decodedEpic);
+        assertNull(decodedEpic.getStartTime());
+        assertNull(decodedEpic.getDuration());
+
+        Subtask subtask = new Subtask("Ünïcødé", null, "custom id", Duration.ofSeconds(-90, 5),
+                LocalDateTime.of(1969, 12, 31, 23, 59, 30, 7), epic.getId());
+        Task decodedSubtask = codec.decode(ByteBuffer.wrap(codec.encode(subtask)));
+        assertInstanceOf(Subtask.class, decodedSubtask);
+        assertEquals(subtask, decodedSubtask);
+        assertEquals(subtask.getStartTime(), decodedSubtask.getStartTime());
+        assertEquals(subtask.getDuration(), decodedSubtask.getDuration());
+    }
+
+    @Test
+    void smallerThanText() throws IdGenerator.IdGeneratorOverflow {
+        Task task = new Task(TestInputValues.LEVEL_1_NAMES.getFirst(),
+                TestInputValues.LEVEL_1_DESCRIPTIONS.getFirst(),
+                new IdGenerator().generateId(),
+                TestInputValues.LEVEL_1_DURATION.getFirst(),
+                TestInputValues.LEVEL_1_START_DATE_TIMES.getFirst());
+        int textLength = new TaskStringifier().stringify(task).getBytes(StandardCharsets.UTF_8).length;
+        assertTrue(codec.encode(task).length * 2 <= textLength);
+    }
+
+    @Test
+    void decodeBlankAndPadded() throws IdGenerator.IdGeneratorOverflow {
+        assertNull(codec.decode(ByteBuffer.wrap(new byte[]{BinaryTaskCodec.BLANK, 0, 0})));
+        Task task = new Task("title", "description", new IdGenerator().generateId(), null, null);
+        byte[] encoded = codec.encode(task);
+        byte[] padded = new byte[encoded.length + 16];
+        System.arraycopy(encoded, 0, padded, 0, encoded.length);
+        assertEquals(task, codec.decode(ByteBuffer.wrap(padded)));
+    }
+}